@@ -8,6 +8,9 @@ public record ProductAggregate(
         int weight,
         List<RecommendationSummary> recommendations,
         List<ReviewSummary> reviews,
-        ServiceAddresses serviceAddresses
+        ServiceAddresses serviceAddresses,
+        boolean stale,
+        List<String> degradedSections,
+        int version
 ) {
 }
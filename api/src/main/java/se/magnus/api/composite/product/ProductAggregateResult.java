@@ -0,0 +1,9 @@
+package se.magnus.api.composite.product;
+
+public record ProductAggregateResult(
+        int productId,
+        int status,
+        ProductAggregate product,
+        String message
+) {
+}
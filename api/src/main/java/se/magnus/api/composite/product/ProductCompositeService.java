@@ -4,14 +4,18 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Tag(name = "ProductComposite", description = "REST API for composite product information.")
@@ -23,15 +27,59 @@ public interface ProductCompositeService {
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+        @ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
         @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
         @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
         @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
     })
     @GetMapping(value = "/product-composite/{productId}", produces = "application/json")
-    Mono<ProductAggregate> getProduct(
+    Mono<ResponseEntity<ProductAggregate>> getProduct(
         @PathVariable int productId,
         @RequestParam(value = "delay", required = false, defaultValue = "0") int delay,
-        @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent
+        @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent,
+        @RequestHeader(value = "Cache-Control", required = false) String cacheControl
+    );
+
+    @Operation(
+        summary = "${api.product-composite.get-composite-products.description}",
+        description = "${api.product-composite.get-composite-products.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+        @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(value = "/product-composite", params = "ids", produces = "application/json")
+    Flux<ProductAggregateResult> getProducts(@RequestParam("ids") List<Integer> productIds);
+
+    @Operation(
+        summary = "${api.product-composite.get-composite-product-page.description}",
+        description = "${api.product-composite.get-composite-product-page.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+        @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(value = "/product-composite", params = "page", produces = "application/json")
+    Flux<ProductAggregate> getProductPage(
+        @RequestParam("page") int page,
+        @RequestParam(value = "size", required = false, defaultValue = "20") int size
+    );
+
+    @Operation(
+        summary = "${api.product-composite.get-composite-product-stream.description}",
+        description = "${api.product-composite.get-composite-product-stream.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+        @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(value = "/product-composite/stream", produces = "application/x-ndjson")
+    Flux<ProductAggregate> getProductStream(
+        @RequestParam("fromProductId") int fromProductId,
+        @RequestParam("toProductId") int toProductId
     );
 
     @Operation(
@@ -6,19 +6,27 @@ public class RecommendationSummary {
     private final String author;
     private final int rate;
     private final String content;
+    private final int version;
 
     public RecommendationSummary() {
         this.recommendationId = 0;
         this.author = null;
         this.rate = 0;
         this.content = null;
+        this.version = 0;
     }
 
     public RecommendationSummary(int recommendationId, String author, int rate, String content) {
+        this(recommendationId, author, rate, content, 0);
+    }
+
+    public RecommendationSummary(int recommendationId, String author, int rate, String content,
+        int version) {
         this.recommendationId = recommendationId;
         this.author = author;
         this.rate = rate;
         this.content = content;
+        this.version = version;
     }
 
     public int getRecommendationId() {
@@ -36,4 +44,8 @@ public class RecommendationSummary {
     public String getContent() {
         return content;
     }
+
+    public int getVersion() {
+        return version;
+    }
 }
@@ -6,19 +6,27 @@ public class ReviewSummary {
     private final String author;
     private final String subject;
     private final String content;
+    private final int version;
 
     public ReviewSummary() {
         this.reviewId = 0;
         this.author = null;
         this.subject = null;
         this.content = null;
+        this.version = 0;
     }
 
     public ReviewSummary(int reviewId, String author, String subject, String content) {
+        this(reviewId, author, subject, content, 0);
+    }
+
+    public ReviewSummary(int reviewId, String author, String subject, String content,
+        int version) {
         this.reviewId = reviewId;
         this.author = author;
         this.subject = subject;
         this.content = content;
+        this.version = version;
     }
 
     public int getReviewId() {
@@ -36,4 +44,8 @@ public class ReviewSummary {
     public String getContent() {
         return content;
     }
+
+    public int getVersion() {
+        return version;
+    }
 }
@@ -5,6 +5,7 @@ public class Product {
     private String name;
     private int weight;
     private String serviceAddress;
+    private int version;
 
     public Product() {
         productId = 0;
@@ -51,4 +52,12 @@ public class Product {
     public void setServiceAddress(String serviceAddress) {
         this.serviceAddress = serviceAddress;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -1,21 +1,30 @@
 package se.magnus.api.core.product;
 
+import java.util.List;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductService {
 
-    @GetMapping(value = "/product/{productId}", produces = "application/json")
+    @GetMapping(value = "/product/{productId}", produces = {"application/json", "application/x-jackson-smile"})
     Mono<Product> getProduct(@PathVariable int productId,
         @RequestParam(value = "delay", required = false, defaultValue = "0") int delay,
         @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent
     );
 
+    @GetMapping(value = "/product", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+    Flux<Product> getProducts(@RequestParam("productIds") List<Integer> productIds);
+
+    @GetMapping(value = "/product", params = "page", produces = {"application/json", "application/x-jackson-smile"})
+    Flux<Product> getProductPage(@RequestParam("page") int page,
+        @RequestParam(value = "size", required = false, defaultValue = "20") int size);
+
     @PostMapping(value = "/product", consumes = "application/json", produces = "application/json")
     Mono<Product> createProduct(@RequestBody Product body);
 
@@ -8,6 +8,7 @@ public class Recommendation {
     private int rate;
     private String content;
     private String serviceAddress;
+    private int version;
 
     public Recommendation() {
         productId = 0;
@@ -75,4 +76,12 @@ public class Recommendation {
     public void setServiceAddress(String serviceAddress) {
         this.serviceAddress = serviceAddress;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
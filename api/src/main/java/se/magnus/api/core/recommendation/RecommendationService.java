@@ -1,5 +1,6 @@
 package se.magnus.api.core.recommendation;
 
+import java.util.List;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -10,12 +11,18 @@ import reactor.core.publisher.Mono;
 
 public interface RecommendationService {
 
-    @GetMapping(value = "/recommendation", produces = "application/json")
+    @GetMapping(value = "/recommendation", produces = {"application/json", "application/x-jackson-smile"})
     Flux<Recommendation> getRecommendations(@RequestParam("productId") int productId);
 
+    @GetMapping(value = "/recommendation", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+    Flux<Recommendation> getRecommendations(@RequestParam("productIds") List<Integer> productIds);
+
     @PostMapping(value = "/recommendation", consumes = "application/json", produces = "application/json")
     Mono<Recommendation> createRecommendation(@RequestBody Recommendation body);
 
+    @PostMapping(value = "/recommendation/batch", consumes = "application/json", produces = "application/json")
+    Flux<Recommendation> createRecommendations(@RequestBody List<Recommendation> body);
+
     @DeleteMapping("/recommendation")
     Mono<Void> deleteRecommendations(
         @RequestParam(value = "productId", required = true) int productId);
@@ -1,5 +1,6 @@
 package se.magnus.api.core.review;
 
+import java.util.List;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -10,12 +11,18 @@ import reactor.core.publisher.Mono;
 
 public interface ReviewService {
 
-    @GetMapping(value = "/review", produces = "application/json")
+    @GetMapping(value = "/review", produces = {"application/json", "application/x-jackson-smile"})
     Flux<Review> getReviews(@RequestParam("productId") int productId);
 
+    @GetMapping(value = "/review", params = "productIds", produces = {"application/json", "application/x-jackson-smile"})
+    Flux<Review> getReviews(@RequestParam("productIds") List<Integer> productIds);
+
     @PostMapping(value = "/review", consumes = "application/json", produces = "application/json")
     Mono<Review> createReview(@RequestBody Review body);
 
+    @PostMapping(value = "/review/batch", consumes = "application/json", produces = "application/json")
+    Flux<Review> createReviews(@RequestBody List<Review> body);
+
     @DeleteMapping("/review")
     Mono<Void> deleteReviews(@RequestParam(value = "productId", required = true) int productId);
 }
@@ -1,12 +1,14 @@
 package se.magnus.api.event;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 public class Event<K, T> {
 
     private Event.Type eventType;
     private K key;
     private T data;
+    private List<T> items;
     private ZonedDateTime eventCreatedAt;
 
     public Event() {
@@ -23,6 +25,13 @@ public class Event<K, T> {
         this.eventCreatedAt = ZonedDateTime.now();
     }
 
+    // Creates many entities that belong to the same product, the key is the productId
+    public static <K, T> Event<K, T> createBatch(K key, List<T> items) {
+        Event<K, T> event = new Event<>(Type.CREATE_BATCH, key, null);
+        event.items = items;
+        return event;
+    }
+
     public Type getEventType() {
         return eventType;
     }
@@ -35,9 +44,13 @@ public class Event<K, T> {
         return data;
     }
 
+    public List<T> getItems() {
+        return items;
+    }
+
     public ZonedDateTime getEventCreatedAt() {
         return eventCreatedAt;
     }
 
-    public enum Type {CREATE, DELETE}
+    public enum Type {CREATE, CREATE_BATCH, DELETE}
 }
@@ -0,0 +1,68 @@
+package se.magnus.microservices.composite.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+// Clients reuse their access tokens, a token that has been verified once is served from the cache
+// until it expires instead of verifying its signature again. Keyed by a hash of the token
+class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize,
+        MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(Expiry.<String, Jwt>creating((key, jwt) -> untilExpiry(jwt)))
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "decodedJwts");
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        String key = hash(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        // Tokens without an expiry are verified every time
+        return delegate.decode(token)
+            .doOnNext(jwt -> {
+                if (jwt.getExpiresAt() != null) {
+                    cache.put(key, jwt);
+                }
+            });
+    }
+
+    private static Duration untilExpiry(Jwt jwt) {
+        Duration duration = Duration.between(Instant.now(), jwt.getExpiresAt());
+        return duration.isNegative() ? Duration.ZERO : duration;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package se.magnus.microservices.composite.product;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.time.Duration;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Keeps the JWK set from a local file or the authorization server in memory, it is reloaded in
+// the background before keys are rotated, and at once if a token refers to an unknown key
+@Slf4j
+class JwkSetLoader {
+
+    private final Resource location;
+    private final Duration refreshInterval;
+    private final Duration minReloadInterval;
+    private final Duration timeout;
+
+    private volatile JWKSet jwkSet = new JWKSet();
+    private volatile long lastLoadAttempt;
+
+    JwkSetLoader(Resource location, Duration refreshInterval, Duration minReloadInterval,
+        Duration timeout) {
+        this.location = location;
+        this.refreshInterval = refreshInterval;
+        this.minReloadInterval = minReloadInterval;
+        this.timeout = timeout;
+    }
+
+    void start() {
+        Flux.interval(Duration.ZERO, refreshInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> load(), 0)
+            .subscribe();
+    }
+
+    Flux<JWK> getKeys(SignedJWT jwt) {
+        String keyId = jwt.getHeader().getKeyID();
+        List<JWK> keys = select(keyId);
+        if (!keys.isEmpty() || System.nanoTime() - lastLoadAttempt < minReloadInterval.toNanos()) {
+            return Flux.fromIterable(keys);
+        }
+        return load().thenMany(Flux.defer(() -> Flux.fromIterable(select(keyId))));
+    }
+
+    private List<JWK> select(String keyId) {
+        List<JWK> keys = jwkSet.getKeys();
+        return keyId == null ? keys
+            : keys.stream().filter(key -> keyId.equals(key.getKeyID())).toList();
+    }
+
+    // A failed load keeps the current keys, i.e. tokens are still verified while the
+    // authorization server is unavailable
+    private Mono<Void> load() {
+        return Mono.fromCallable(() -> {
+                lastLoadAttempt = System.nanoTime();
+                // A Resource has no timeouts, i.e. an unresponsive authorization server would
+                // block a thread of the bounded elastic scheduler forever
+                URLConnection connection = location.getURL().openConnection();
+                connection.setConnectTimeout((int) timeout.toMillis());
+                connection.setReadTimeout((int) timeout.toMillis());
+                try (InputStream in = connection.getInputStream()) {
+                    return JWKSet.load(in);
+                }
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(loaded -> {
+                log.debug("Loaded {} keys from {}", loaded.getKeys().size(), location);
+                jwkSet = loaded;
+            })
+            .onErrorResume(ex -> {
+                log.warn("Failed to load the JWK set from {}: {}", location, ex.toString());
+                return Mono.empty();
+            })
+            .then();
+    }
+}
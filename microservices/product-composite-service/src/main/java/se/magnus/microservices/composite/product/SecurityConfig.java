@@ -4,19 +4,50 @@ import static org.springframework.http.HttpMethod.DELETE;
 import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.HttpMethod.POST;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.Customizer;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
+import org.springframework.security.oauth2.jwt.SupplierReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.web.server.BearerTokenServerAuthenticationEntryPoint;
+import org.springframework.security.oauth2.server.resource.web.server.authentication.ServerBearerTokenAuthenticationConverter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
 
 @EnableWebFluxSecurity
 @Configuration
+@Slf4j
 public class SecurityConfig {
 
     @Bean
-    SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+    SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http,
+        ReactiveJwtDecoder jwtDecoder,
+        @Value("${app.verified-identity.enabled:false}") boolean verifiedIdentityEnabled,
+        @Value("${app.verified-identity.secret:}") String verifiedIdentitySecret,
+        ObjectMapper mapper) {
+
+        ServerBearerTokenAuthenticationConverter bearerTokenConverter =
+            new ServerBearerTokenAuthenticationConverter();
+        if (verifiedIdentityEnabled) {
+            log.info("Accepts the verified identity of the gateway in place of the JWT");
+            http.addFilterAt(verifiedIdentityFilter(verifiedIdentitySecret, mapper),
+                SecurityWebFiltersOrder.AUTHENTICATION);
+        }
+
         http.
             authorizeExchange(auth ->
                 auth.pathMatchers("/openapi/**").permitAll()
@@ -30,7 +61,58 @@ public class SecurityConfig {
                     .hasAuthority("SCOPE_product:read")
                     .anyExchange().authenticated())
             .oauth2ResourceServer(oauth2 ->
-                oauth2.jwt(Customizer.withDefaults()));
+                oauth2.jwt(jwt -> jwt.jwtDecoder(jwtDecoder))
+                    // The JWT is not verified again if the gateway has sent a verified identity
+                    .bearerTokenConverter(exchange -> verifiedIdentityEnabled && exchange.getRequest()
+                        .getHeaders().containsKey(VerifiedIdentityAuthenticationManager.HEADER)
+                        ? Mono.empty() : bearerTokenConverter.convert(exchange)));
         return http.build();
     }
+
+    private AuthenticationWebFilter verifiedIdentityFilter(String secret, ObjectMapper mapper) {
+        AuthenticationWebFilter filter =
+            new AuthenticationWebFilter(new VerifiedIdentityAuthenticationManager(secret, mapper));
+        filter.setServerAuthenticationConverter(VerifiedIdentityAuthenticationManager::getCredential);
+        filter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(
+            new BearerTokenServerAuthenticationEntryPoint()));
+        return filter;
+    }
+
+    @Bean
+    ReactiveJwtDecoder jwtDecoder(
+        @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+        @Value("${app.jwt.jwk-set-location:}") String jwkSetLocation,
+        @Value("${app.jwt.jwk-set-refresh-interval:5m}") Duration jwkSetRefreshInterval,
+        @Value("${app.jwt.jwk-set-min-reload-interval:30s}") Duration jwkSetMinReloadInterval,
+        @Value("${app.jwt.jwk-set-timeout:5s}") Duration jwkSetTimeout,
+        @Value("${app.jwt.decoded-cache.maximum-size:10000}") long decodedCacheSize,
+        ResourceLoader resourceLoader,
+        MeterRegistry meterRegistry) {
+
+        ReactiveJwtDecoder decoder;
+        if (StringUtils.hasText(jwkSetLocation)) {
+            // The keys are read from a local file or the local authorization server, i.e. no
+            // discovery over the network at startup. The issuer is still validated if configured
+            log.info("Creates a JWT decoder with the JWK set from {}", jwkSetLocation);
+            JwkSetLoader loader = new JwkSetLoader(resourceLoader.getResource(jwkSetLocation),
+                jwkSetRefreshInterval, jwkSetMinReloadInterval, jwkSetTimeout);
+            loader.start();
+            NimbusReactiveJwtDecoder nimbusDecoder =
+                NimbusReactiveJwtDecoder.withJwkSource(loader::getKeys).build();
+            nimbusDecoder.setJwtValidator(StringUtils.hasText(issuerUri)
+                ? JwtValidators.createDefaultWithIssuer(issuerUri) : JwtValidators.createDefault());
+            decoder = nimbusDecoder;
+        } else {
+            log.info("Creates a JWT decoder with the JWK set of the issuer {}", issuerUri);
+            decoder = new SupplierReactiveJwtDecoder(() -> {
+                if (!StringUtils.hasText(issuerUri)) {
+                    throw new IllegalStateException("Neither an issuer-uri nor a JWK set location is configured");
+                }
+                return ReactiveJwtDecoders.fromIssuerLocation(issuerUri);
+            });
+        }
+
+        return decodedCacheSize > 0
+            ? new CachingReactiveJwtDecoder(decoder, decodedCacheSize, meterRegistry) : decoder;
+    }
 }
@@ -0,0 +1,114 @@
+package se.magnus.microservices.composite.product;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+// Accepts the credential that the gateway adds in the X-Verified-Identity header after it has
+// verified the JWT, see VerifiedIdentityFilter in the gateway for the format. The claims are
+// turned into a Jwt so that authorities and the rest of the service work as for a bearer token
+class VerifiedIdentityAuthenticationManager implements ReactiveAuthenticationManager {
+
+    static final String HEADER = "X-Verified-Identity";
+
+    private static final TypeReference<Map<String, Object>> CLAIMS = new TypeReference<>() {
+    };
+
+    private final SecretKeySpec key;
+    private final ObjectMapper mapper;
+    private final JwtAuthenticationConverter authenticationConverter = new JwtAuthenticationConverter();
+
+    VerifiedIdentityAuthenticationManager(String secret, ObjectMapper mapper) {
+        if (secret.length() < 32) {
+            throw new IllegalStateException("app.verified-identity.secret must be at least 32 characters");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.mapper = mapper;
+    }
+
+    static Mono<Authentication> getCredential(ServerWebExchange exchange) {
+        return Mono.justOrEmpty(exchange.getRequest().getHeaders().getFirst(HEADER))
+            .map(credential -> new PreAuthenticatedAuthenticationToken(credential, credential));
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        return Mono.<Authentication>fromCallable(() -> authenticationConverter.convert(
+            verify((String) authentication.getCredentials())));
+    }
+
+    Jwt verify(String credential) {
+        int separator = credential.indexOf('.');
+        if (separator < 0) {
+            throw new BadCredentialsException("Malformed verified identity");
+        }
+
+        String payload = credential.substring(0, separator);
+        byte[] signature;
+        Map<String, Object> claims;
+        try {
+            signature = Base64.getUrlDecoder().decode(credential.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                throw new BadCredentialsException("Invalid signature of verified identity");
+            }
+            claims = mapper.readValue(Base64.getUrlDecoder().decode(payload), CLAIMS);
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new BadCredentialsException("Malformed verified identity", ex);
+        }
+
+        Instant now = Instant.now();
+        Instant validUntil = toInstant(claims.remove("vexp"));
+        if (validUntil == null || now.isAfter(validUntil)) {
+            throw new BadCredentialsException("Verified identity has expired");
+        }
+
+        Instant issuedAt = toInstant(claims.remove("iat"));
+        Instant expiresAt = toInstant(claims.remove("exp"));
+        claims.values().removeIf(value -> value == null);
+        Jwt.Builder jwt = Jwt.withTokenValue(credential)
+            .header("alg", "HS256")
+            .claims(jwtClaims -> jwtClaims.putAll(claims));
+        if (issuedAt != null) {
+            jwt.issuedAt(issuedAt);
+        }
+        if (expiresAt != null) {
+            jwt.expiresAt(expiresAt);
+        }
+        try {
+            return jwt.build();
+        } catch (IllegalArgumentException ex) {
+            // E.g. no claims left besides vexp
+            throw new BadCredentialsException("Invalid claims of verified identity", ex);
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to verify verified identity", ex);
+        }
+    }
+
+    private static Instant toInstant(Object epochSeconds) {
+        return epochSeconds instanceof Number number ? Instant.ofEpochSecond(number.longValue()) : null;
+    }
+}
@@ -0,0 +1,188 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter implements ExchangeFilterFunction {
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final int minRttResetSamples;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(
+        @Value("${app.concurrency-limit.enabled:false}") boolean enabled,
+        @Value("${app.concurrency-limit.initial-limit:100}") int initialLimit,
+        @Value("${app.concurrency-limit.min-limit:5}") int minLimit,
+        @Value("${app.concurrency-limit.max-limit:200}") int maxLimit,
+        @Value("${app.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+        @Value("${app.concurrency-limit.rtt-tolerance:2.0}") double rttTolerance,
+        @Value("${app.concurrency-limit.min-rtt-reset-samples:1000}") int minRttResetSamples,
+        MeterRegistry meterRegistry) {
+
+        log.info("Creates an adaptive concurrency limiter, enabled = {}, limits = {}/{}/{}",
+            enabled, minLimit, initialLimit, maxLimit);
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.minRttResetSamples = minRttResetSamples;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!enabled) {
+            return next.exchange(request);
+        }
+
+        Limit limit = limits.computeIfAbsent(getDestination(request.url()), Limit::new);
+
+        return Mono.defer(() -> {
+            if (!limit.tryAcquire()) {
+                limit.rejections.increment();
+                return Mono.error(new ServiceUnavailableException(
+                    "Concurrency limit of " + limit.getLimit() + " reached for " + limit.destination));
+            }
+
+            // The permit is held until the body is consumed or released, not only until the
+            // headers have arrived. WebClient always does one of them, e.g. in retrieve()
+            Permit permit = new Permit(limit);
+            return next.exchange(request)
+                .map(response -> response.mutate()
+                    .body(body -> body.doFinally(signal -> permit.release(
+                        isOverloaded(response) || signal == SignalType.ON_ERROR,
+                        signal == SignalType.CANCEL)))
+                    .build())
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_COMPLETE) {
+                        permit.release(signal == SignalType.ON_ERROR, signal == SignalType.CANCEL);
+                    }
+                });
+        });
+    }
+
+    public int getLimit(String destination) {
+        Limit limit = limits.get(destination);
+        return limit == null ? initialLimit : limit.getLimit();
+    }
+
+    private boolean isOverloaded(ClientResponse response) {
+        return response.statusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)
+            || response.statusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    private String getDestination(URI url) {
+        return url.getPort() < 0 ? url.getHost() : url.getHost() + ":" + url.getPort();
+    }
+
+    private static final class Permit {
+
+        private final Limit limit;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Limit limit) {
+            this.limit = limit;
+        }
+
+        void release(boolean dropped, boolean cancelled) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - start, dropped, cancelled);
+            }
+        }
+    }
+
+    private final class Limit {
+
+        private final String destination;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter rejections;
+
+        private volatile double limit = initialLimit;
+        private long minRttNanos = Long.MAX_VALUE;
+        private int samplesSinceMinRttReset;
+
+        Limit(String destination) {
+            this.destination = destination;
+            Gauge.builder("composite.concurrency.limit", this, Limit::getLimit)
+                .tag("destination", destination)
+                .register(meterRegistry);
+            Gauge.builder("composite.concurrency.in.flight", inFlight, AtomicInteger::get)
+                .tag("destination", destination)
+                .register(meterRegistry);
+            this.rejections = Counter.builder("composite.concurrency.rejected")
+                .tag("destination", destination)
+                .register(meterRegistry);
+        }
+
+        int getLimit() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= getLimit()) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long rttNanos, boolean dropped, boolean cancelled) {
+            int inFlightBeforeRelease = inFlight.getAndDecrement();
+
+            // Cancelled calls, e.g. timed out or lost hedges, say nothing reliable about the RTT
+            if (!cancelled) {
+                onSample(rttNanos, dropped, inFlightBeforeRelease);
+            }
+        }
+
+        private synchronized void onSample(long rttNanos, boolean dropped, int inFlightAtSample) {
+            // The baseline RTT is reset now and then so that it can follow a permanent change
+            if (++samplesSinceMinRttReset > minRttResetSamples) {
+                samplesSinceMinRttReset = 0;
+                minRttNanos = rttNanos;
+            }
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+
+            // AIMD, i.e. back off multiplicatively on errors or queueing in the downstream service
+            // and grow additively by about one per round trip while the limit is actually used
+            if (dropped || rttNanos > minRttNanos * rttTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlightAtSample * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+}
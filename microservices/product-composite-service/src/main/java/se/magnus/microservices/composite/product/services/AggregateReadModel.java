@@ -0,0 +1,291 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.util.http.ServiceUtil;
+
+// Local, disk backed copy of the product aggregates, built from the products, recommendations and
+// reviews topics. Each entity type is kept in its own map keyed by productId and the aggregate is
+// assembled on read, i.e. events of the three topics may arrive in any order
+@Component
+@Slf4j
+public class AggregateReadModel implements HealthIndicator {
+
+    private static final TypeReference<List<Recommendation>> RECOMMENDATIONS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<Review>> REVIEWS = new TypeReference<>() {
+    };
+    private static final Set<String> TOPICS = Set.of("products", "recommendations", "reviews");
+
+    private final boolean enabled;
+    private final ObjectMapper mapper;
+    private final ServiceUtil serviceUtil;
+    private final Counter appliedEvents;
+
+    private MVStore store;
+    private MVMap<Integer, String> products;
+    private MVMap<Integer, String> recommendations;
+    private MVMap<Integer, String> reviews;
+    private final Set<String> assignedTopics = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> pendingEndOffsets = new ConcurrentHashMap<>();
+    private volatile long lagMillis;
+    private volatile boolean caughtUp;
+
+    public AggregateReadModel(
+        @Value("${app.read-model.enabled:false}") boolean enabled,
+        @Value("${app.read-model.file:/tmp/product-composite-read-model.mv}") Path file,
+        @Value("${app.read-model.rebuild-on-startup:true}") boolean rebuildOnStartup,
+        ObjectMapper mapper,
+        ServiceUtil serviceUtil,
+        MeterRegistry meterRegistry) {
+
+        this.enabled = enabled;
+        this.mapper = mapper;
+        this.serviceUtil = serviceUtil;
+        this.appliedEvents = meterRegistry.counter("composite.read-model.events");
+
+        // A model that is kept on disk is only behind by what was published while it was down
+        this.caughtUp = !rebuildOnStartup;
+
+        if (enabled) {
+            open(file, rebuildOnStartup);
+            Gauge.builder("composite.read-model.lag", this, AggregateReadModel::getLagSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+            Gauge.builder("composite.read-model.products", products, MVMap::size)
+                .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<ProductAggregate> get(int productId) {
+        return Mono.fromCallable(() -> {
+                Product product = read(products, productId, Product.class);
+                if (product == null) {
+                    throw new NotFoundException("No product found for productId: " + productId);
+                }
+                return createAggregate(product, readList(recommendations, productId, RECOMMENDATIONS),
+                    readList(reviews, productId, REVIEWS));
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Time between the creation of the last applied event and when it was applied, i.e. it
+    // does not grow while the topics are idle
+    public double getLagSeconds() {
+        return lagMillis / 1000.0;
+    }
+
+    // The replay after a rebuild has caught up when partitions of all three topics have been
+    // assigned and every partition has been consumed up to its end offset at the assignment
+    public boolean isCaughtUp() {
+        if (!caughtUp && assignedTopics.containsAll(TOPICS) && pendingEndOffsets.isEmpty()) {
+            log.info("The read model has caught up, {} products", products.size());
+            caughtUp = true;
+        }
+        return caughtUp;
+    }
+
+    // Called when the consumer of the read model gets a partition, see ReadModelRebalanceListener
+    public void assigned(String topic, int partition, long beginningOffset, long endOffset) {
+        log.debug("Replays {}-{} from offset {} to {}", topic, partition, beginningOffset,
+            endOffset);
+        if (endOffset > beginningOffset) {
+            pendingEndOffsets.put(topic + "-" + partition, endOffset);
+        } else {
+            pendingEndOffsets.remove(topic + "-" + partition);
+        }
+        assignedTopics.add(topic);
+    }
+
+    // Called for every consumed record, also for records that failed to be applied
+    public void consumed(String topic, int partition, long offset) {
+        pendingEndOffsets.computeIfPresent(topic + "-" + partition,
+            (key, endOffset) -> offset + 1 >= endOffset ? null : endOffset);
+    }
+
+    // Part of the readiness group in the read-model profile, the instance gets no traffic until
+    // the read model has caught up
+    @Override
+    public Health health() {
+        if (!enabled) {
+            return Health.up().build();
+        }
+        Health.Builder health = isCaughtUp() ? Health.up() : Health.outOfService();
+        return health.withDetail("products", products.size())
+            .withDetail("pendingPartitions", pendingEndOffsets.size())
+            .withDetail("lagMs", lagMillis)
+            .build();
+    }
+
+    public void apply(String topic, Event<Integer, Map<String, Object>> event) {
+        switch (topic) {
+            case "products" -> applyProductEvent(event);
+            case "recommendations" -> applyListEvent(recommendations, event, Recommendation.class,
+                RECOMMENDATIONS, Recommendation::getProductId, Recommendation::getRecommendationId);
+            case "reviews" -> applyListEvent(reviews, event, Review.class, REVIEWS,
+                Review::getProductId, Review::getReviewId);
+            default -> throw new EventProcessingException("Unexpected topic: " + topic);
+        }
+
+        appliedEvents.increment();
+        if (event.getEventCreatedAt() != null) {
+            lagMillis = Math.max(0, System.currentTimeMillis()
+                - event.getEventCreatedAt().toInstant().toEpochMilli());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private void applyProductEvent(Event<Integer, Map<String, Object>> event) {
+        switch (event.getEventType()) {
+            case CREATE -> products.put(event.getKey(), write(mapper.convertValue(event.getData(),
+                Product.class)));
+            case DELETE -> products.remove(event.getKey());
+            default -> throw new EventProcessingException(
+                "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event");
+        }
+    }
+
+    // Create events of recommendations and reviews are keyed by their own id, delete events by
+    // the productId
+    private <T> void applyListEvent(MVMap<Integer, String> map,
+        Event<Integer, Map<String, Object>> event, Class<T> type, TypeReference<List<T>> listType,
+        Function<T, Integer> productIdOf, Function<T, Integer> idOf) {
+
+        switch (event.getEventType()) {
+            case CREATE -> upsert(map, List.of(mapper.convertValue(event.getData(), type)),
+                listType, productIdOf, idOf);
+            case CREATE_BATCH -> upsert(map, event.getItems().stream()
+                .map(item -> mapper.convertValue(item, type)).toList(), listType, productIdOf, idOf);
+            case DELETE -> map.remove(event.getKey());
+            default -> throw new EventProcessingException(
+                "Incorrect event type: " + event.getEventType()
+                    + ", expected a CREATE, CREATE_BATCH or DELETE event");
+        }
+    }
+
+    private <T> void upsert(MVMap<Integer, String> map, List<T> entities,
+        TypeReference<List<T>> listType, Function<T, Integer> productIdOf,
+        Function<T, Integer> idOf) {
+
+        for (T entity : entities) {
+            int productId = productIdOf.apply(entity);
+            List<T> current = new ArrayList<>(readList(map, productId, listType));
+            current.removeIf(existing -> idOf.apply(existing).equals(idOf.apply(entity)));
+            current.add(entity);
+            current.sort((a, b) -> Integer.compare(idOf.apply(a), idOf.apply(b)));
+            map.put(productId, write(current));
+        }
+    }
+
+    private ProductAggregate createAggregate(Product product, List<Recommendation> recommendations,
+        List<Review> reviews) {
+
+        List<RecommendationSummary> recommendationSummaries = recommendations.stream()
+            .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(),
+                r.getContent(), r.getVersion()))
+            .toList();
+        List<ReviewSummary> reviewSummaries = reviews.stream()
+            .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(),
+                r.getContent(), r.getVersion()))
+            .toList();
+
+        // Addresses of the core service instances that created the entities
+        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceUtil.getServiceAddress(),
+            product.getServiceAddress(),
+            reviews.isEmpty() ? "" : reviews.get(0).getServiceAddress(),
+            recommendations.isEmpty() ? "" : recommendations.get(0).getServiceAddress());
+        return new ProductAggregate(product.getProductId(), product.getName(), product.getWeight(),
+            recommendationSummaries, reviewSummaries, serviceAddresses, false, List.of(),
+            product.getVersion());
+    }
+
+    private <T> T read(MVMap<Integer, String> map, int productId, Class<T> type) {
+        String json = map.get(productId);
+        try {
+            return json == null ? null : mapper.readValue(json, type);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private <T> List<T> readList(MVMap<Integer, String> map, int productId,
+        TypeReference<List<T>> listType) {
+        String json = map.get(productId);
+        try {
+            return json == null ? List.of() : mapper.readValue(json, listType);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void open(Path file, boolean rebuildOnStartup) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            if (rebuildOnStartup) {
+                // The topics are replayed from the start, see the read-model profile
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to prepare the read model " + file, ex);
+        }
+
+        // Changes are committed in the background within a second and on close
+        store = new MVStore.Builder().fileName(file.toString()).open();
+        store.setAutoCommitDelay(1000);
+        products = store.openMap("products");
+        recommendations = store.openMap("recommendations");
+        reviews = store.openMap("reviews");
+        log.info("Opened the read model {} with {} products", file, products.size());
+    }
+}
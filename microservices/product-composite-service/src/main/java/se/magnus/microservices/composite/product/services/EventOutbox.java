@@ -0,0 +1,280 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+
+// Append-only journal in a memory-mapped file, the header holds the write position and the
+// checkpoint of the relay, i.e. the start of the records not yet published
+@Component
+@Slf4j
+public class EventOutbox {
+
+    private static final int WRITE_POSITION_OFFSET = 0;
+    private static final int CHECKPOINT_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final TypeReference<Event<Object, Object>> EVENT_TYPE = new TypeReference<>() {
+    };
+
+    private final boolean enabled;
+    private final Path file;
+    private final int size;
+    private final boolean force;
+    private final Duration relayInterval;
+    private final int relayBatchSize;
+    private final int relayConcurrency;
+    private final EventPublisher eventPublisher;
+    private final ObjectMapper mapper;
+    private final Counter relayedEvents;
+    private final Counter skippedRecords;
+
+    private FileChannel channel;
+    private MappedByteBuffer journal;
+    private Disposable relay;
+
+    public EventOutbox(
+        @Value("${app.event-outbox.enabled:false}") boolean enabled,
+        @Value("${app.event-outbox.file:/tmp/product-composite-outbox.journal}") Path file,
+        @Value("${app.event-outbox.size:67108864}") int size,
+        @Value("${app.event-outbox.force:false}") boolean force,
+        @Value("${app.event-outbox.relay-interval:100ms}") Duration relayInterval,
+        @Value("${app.event-outbox.relay-batch-size:100}") int relayBatchSize,
+        @Value("${app.event-outbox.relay-concurrency:16}") int relayConcurrency,
+        EventPublisher eventPublisher,
+        ObjectMapper mapper,
+        MeterRegistry meterRegistry) {
+
+        this.enabled = enabled;
+        this.file = file;
+        this.size = size;
+        this.force = force;
+        this.relayInterval = relayInterval;
+        this.relayBatchSize = relayBatchSize;
+        this.relayConcurrency = relayConcurrency;
+        this.eventPublisher = eventPublisher;
+        this.mapper = mapper;
+        this.relayedEvents = meterRegistry.counter("composite.outbox.relayed");
+        this.skippedRecords = meterRegistry.counter("composite.outbox.skipped");
+
+        if (enabled) {
+            open();
+            Gauge.builder("composite.outbox.pending.bytes", this, EventOutbox::getPendingBytes)
+                .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The journal is written, and possibly forced to disk, off the event loop
+    public Mono<Void> append(String bindingName, Event<?, ?> event) {
+        return Mono.<Void>fromRunnable(() -> {
+                try {
+                    append(mapper.writeValueAsBytes(new OutboxRecord(bindingName,
+                        mapper.writeValueAsString(event))));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRelay() {
+        if (!enabled) {
+            return;
+        }
+
+        // Records after the checkpoint, e.g. from before a restart, are published again, i.e. at
+        // least once delivery
+        log.info("Starts the event outbox relay, {} bytes pending", getPendingBytes());
+        relay = Flux.interval(relayInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> relayBatch(), 0)
+            .subscribe(null, ex -> log.error("The event outbox relay has stopped", ex));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (relay != null) {
+            relay.dispose();
+        }
+        if (channel != null) {
+            journal.force();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close the event outbox: {}", ex.toString());
+            }
+        }
+    }
+
+    // The records of a batch are published concurrently, i.e. confirms are awaited in parallel,
+    // while the checkpoint is advanced in journal order up to the first failed record
+    private Mono<Void> relayBatch() {
+        return Mono.defer(() -> {
+                List<PendingRecord> batch = readBatch();
+                return Flux.fromIterable(batch)
+                    .flatMapSequential(pending -> publish(pending).thenReturn(pending),
+                        relayConcurrency)
+                    .doOnNext(pending -> advanceCheckpoint(pending.length()))
+                    .then();
+            })
+            .onErrorResume(ex -> {
+                log.warn("Failed to relay events, will retry: {}", ex.toString());
+                return Mono.empty();
+            });
+    }
+
+    private Mono<Void> publish(PendingRecord pending) {
+        // A record that cannot be read would block the relay forever, it is logged and skipped
+        if (pending.event() == null) {
+            skippedRecords.increment();
+            return Mono.empty();
+        }
+        return eventPublisher.publish(pending.bindingName(), pending.event())
+            .doOnSuccess(v -> relayedEvents.increment());
+    }
+
+    private synchronized void append(byte[] record) {
+        int length = Integer.BYTES + record.length;
+        if (getWritePosition() + length > size) {
+            compact();
+        }
+        if (getWritePosition() + length > size) {
+            throw new ServiceUnavailableException("Event outbox is full");
+        }
+
+        int position = (int) getWritePosition();
+        journal.putInt(position, record.length);
+        journal.put(position + Integer.BYTES, record);
+
+        // The record becomes visible to the relay when the write position is moved past it
+        journal.putLong(WRITE_POSITION_OFFSET, position + length);
+        if (force) {
+            journal.force();
+        }
+    }
+
+    private synchronized List<PendingRecord> readBatch() {
+        List<PendingRecord> batch = new ArrayList<>();
+        long position = getCheckpoint();
+        long writePosition = getWritePosition();
+
+        while (position < writePosition && batch.size() < relayBatchSize) {
+            int length = journal.getInt((int) position);
+            if (length < 0 || position + Integer.BYTES + length > writePosition) {
+                // Without a valid length the following records cannot be found, the rest of
+                // the journal is skipped
+                log.error("Skips {} bytes of the event outbox after an invalid record length {}"
+                    + " at position {}", writePosition - position, length, position);
+                batch.add(new PendingRecord(null, null, (int) (writePosition - position)));
+                break;
+            }
+            byte[] record = new byte[length];
+            journal.get((int) position + Integer.BYTES, record);
+            batch.add(readRecord(record, Integer.BYTES + length));
+            position += Integer.BYTES + length;
+        }
+        return batch;
+    }
+
+    // The checkpoint is moved by the relayed length and not set to an absolute position, i.e. it
+    // stays correct if the journal is compacted while a batch is being relayed
+    private synchronized void advanceCheckpoint(int length) {
+        long checkpoint = getCheckpoint() + length;
+        if (checkpoint == getWritePosition()) {
+            journal.putLong(WRITE_POSITION_OFFSET, HEADER_SIZE);
+            checkpoint = HEADER_SIZE;
+        }
+        journal.putLong(CHECKPOINT_OFFSET, checkpoint);
+    }
+
+    private void compact() {
+        int checkpoint = (int) getCheckpoint();
+        int pending = (int) (getWritePosition() - checkpoint);
+        if (checkpoint == HEADER_SIZE) {
+            return;
+        }
+
+        log.debug("Compacts the event outbox, {} bytes pending", pending);
+        byte[] records = new byte[pending];
+        journal.get(checkpoint, records);
+        journal.put(HEADER_SIZE, records);
+        journal.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+        journal.putLong(WRITE_POSITION_OFFSET, HEADER_SIZE + pending);
+    }
+
+    private PendingRecord readRecord(byte[] record, int length) {
+        try {
+            OutboxRecord outboxRecord = mapper.readValue(record, OutboxRecord.class);
+            return new PendingRecord(outboxRecord.bindingName(),
+                mapper.readValue(outboxRecord.event(), EVENT_TYPE), length);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Skips an unreadable event outbox record: {}, {}",
+                new String(record, StandardCharsets.UTF_8), ex.toString());
+            return new PendingRecord(null, null, length);
+        }
+    }
+
+    private synchronized long getPendingBytes() {
+        return getWritePosition() - getCheckpoint();
+    }
+
+    private long getWritePosition() {
+        return journal.getLong(WRITE_POSITION_OFFSET);
+    }
+
+    private long getCheckpoint() {
+        return journal.getLong(CHECKPOINT_OFFSET);
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open the event outbox " + file, ex);
+        }
+
+        if (getWritePosition() < HEADER_SIZE) {
+            journal.putLong(WRITE_POSITION_OFFSET, HEADER_SIZE);
+            journal.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+        }
+        log.info("Opened the event outbox {}, {} bytes pending", file, getPendingBytes());
+    }
+
+    record OutboxRecord(String bindingName, String event) {
+    }
+
+    private record PendingRecord(String bindingName, Event<Object, Object> event, int length) {
+    }
+}
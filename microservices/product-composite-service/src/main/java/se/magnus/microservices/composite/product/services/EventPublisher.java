@@ -0,0 +1,233 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.util.messaging.GzipJsonMessageConverter;
+
+@Component
+@Slf4j
+public class EventPublisher {
+
+    static final String CORRELATION_ID_HEADER = "eventCorrelationId";
+
+    private final StreamBridge streamBridge;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler publishEventScheduler;
+    private final boolean confirms;
+    private final boolean kafka;
+    private final Duration confirmTimeout;
+    private final int maxUnconfirmed;
+    private final ObjectMapper mapper;
+    private final boolean compression;
+    private final int compressionThreshold;
+
+    private final AtomicInteger unconfirmed = new AtomicInteger();
+    private final Map<String, CompletableFuture<Void>> pendingKafkaAcks = new ConcurrentHashMap<>();
+    private final Timer confirmLatency;
+
+    public EventPublisher(
+        StreamBridge streamBridge,
+        MeterRegistry meterRegistry,
+        @Qualifier("publishEventScheduler") Scheduler publishEventScheduler,
+        @Qualifier("eventPublisherAcks") SubscribableChannel kafkaAcks,
+        @Qualifier("errorChannel") SubscribableChannel errorChannel,
+        @Value("${app.event-publishing.confirms:false}") boolean confirms,
+        @Value("${spring.cloud.stream.defaultBinder:rabbit}") String binder,
+        @Value("${app.event-publishing.confirm-timeout:5s}") Duration confirmTimeout,
+        @Value("${app.event-publishing.max-unconfirmed:1000}") int maxUnconfirmed,
+        ObjectMapper mapper,
+        @Value("${app.event-publishing.compression.enabled:false}") boolean compression,
+        @Value("${app.event-publishing.compression.threshold-bytes:8192}") int compressionThreshold) {
+
+        log.info("Creates an event publisher, confirms = {}, binder = {}, maxUnconfirmed = {}, "
+            + "compression = {}", confirms, binder, maxUnconfirmed, compression);
+        this.streamBridge = streamBridge;
+        this.meterRegistry = meterRegistry;
+        this.publishEventScheduler = publishEventScheduler;
+        this.confirms = confirms;
+        this.kafka = "kafka".equals(binder);
+        this.confirmTimeout = confirmTimeout;
+        this.maxUnconfirmed = maxUnconfirmed;
+        this.mapper = mapper;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+
+        kafkaAcks.subscribe(this::onKafkaAck);
+        errorChannel.subscribe(this::onSendFailure);
+        Gauge.builder("composite.events.unconfirmed", unconfirmed, AtomicInteger::get)
+            .register(meterRegistry);
+        this.confirmLatency = Timer.builder("composite.events.confirm.latency")
+            .register(meterRegistry);
+    }
+
+    public Mono<Void> publish(String bindingName, Event<?, ?> event) {
+        return Mono.defer(() -> {
+            log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
+
+            MessageBuilder<?> messageBuilder = createMessage(bindingName, event)
+                .setHeader("partitionKey", event.getKey());
+
+            if (!confirms) {
+                return send(bindingName, messageBuilder.build())
+                    .doOnSuccess(v -> count(bindingName, "sent"))
+                    .doOnError(ex -> count(bindingName, "failed"));
+            }
+
+            // Unconfirmed events hold resources in the binder and the broker, fail fast instead
+            // of piling them up while the broker is slow
+            if (unconfirmed.incrementAndGet() > maxUnconfirmed) {
+                unconfirmed.decrementAndGet();
+                count(bindingName, "rejected");
+                return Mono.error(new ServiceUnavailableException(
+                    "Too many unconfirmed events, max is " + maxUnconfirmed));
+            }
+
+            String correlationId = UUID.randomUUID().toString();
+            CompletableFuture<Void> confirmed = kafka
+                ? expectKafkaAck(messageBuilder, correlationId)
+                : expectRabbitConfirm(messageBuilder, correlationId);
+
+            long start = System.nanoTime();
+            return send(bindingName, messageBuilder.build())
+                .then(Mono.fromFuture(confirmed))
+                .timeout(confirmTimeout)
+                .onErrorMap(TimeoutException.class, ex -> new ServiceUnavailableException(
+                    "No confirm for event within " + confirmTimeout.toMillis() + " ms"))
+                .doOnSuccess(v -> count(bindingName, "confirmed"))
+                .doOnError(ex -> count(bindingName, "failed"))
+                .doFinally(signal -> {
+                    unconfirmed.decrementAndGet();
+                    pendingKafkaAcks.remove(correlationId);
+                    confirmLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                });
+        });
+    }
+
+    // Events above the threshold are sent as gzip compressed JSON, smaller events as plain JSON
+    // since compressing them costs more CPU than it saves on the wire. Either way the event is
+    // serialized once, the binder sends byte[] payloads as they are
+    private MessageBuilder<?> createMessage(String bindingName, Event<?, ?> event) {
+        if (!compression) {
+            return MessageBuilder.withPayload(event);
+        }
+
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Failed to serialize event", ex);
+        }
+        if (json.length < compressionThreshold) {
+            payloadSize(bindingName, "json").record(json.length);
+            return MessageBuilder.withPayload(json)
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON_VALUE);
+        }
+
+        byte[] compressed = GzipJsonMessageConverter.compress(json);
+        payloadSize(bindingName, "gzip").record(compressed.length);
+        return MessageBuilder.withPayload(compressed)
+            .setHeader(MessageHeaders.CONTENT_TYPE, GzipJsonMessageConverter.CONTENT_TYPE);
+    }
+
+    private DistributionSummary payloadSize(String bindingName, String codec) {
+        return DistributionSummary.builder("composite.events.payload.size")
+            .baseUnit("bytes")
+            .tag("binding", bindingName)
+            .tag("codec", codec)
+            .register(meterRegistry);
+    }
+
+    // Neither binder waits for the broker, the outcome arrives through the confirm future, the
+    // ack channel or the error channel. The hand-over itself may block, e.g. Rabbit under flow
+    // control or the Kafka producer up to max.block.ms, and runs on a bounded pool that rejects
+    // events once its queue is full instead of stalling the caller
+    private Mono<Void> send(String bindingName, Message<?> message) {
+        return Mono.fromCallable(() -> streamBridge.send(bindingName, message))
+            .subscribeOn(publishEventScheduler)
+            .onErrorMap(RejectedExecutionException.class, ex -> new ServiceUnavailableException(
+                "Too many events waiting to be sent to " + bindingName))
+            .flatMap(sent -> sent ? Mono.<Void>empty() : Mono.error(
+                new ServiceUnavailableException("Failed to send event to " + bindingName)));
+    }
+
+    // Requires publisher-confirm-type: correlated and useConfirmHeader on the Rabbit producer
+    private CompletableFuture<Void> expectRabbitConfirm(MessageBuilder<?> messageBuilder,
+        String correlationId) {
+        CorrelationData correlationData = new CorrelationData(correlationId);
+        messageBuilder.setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlationData);
+        return correlationData.getFuture().thenAccept(confirm -> {
+            if (!confirm.isAck()) {
+                throw new ServiceUnavailableException("Event rejected by broker: " + confirm.getReason());
+            }
+        });
+    }
+
+    // Requires recordMetadataChannel: eventPublisherAcks on the Kafka producer, the channel gets
+    // the sent message including its headers once Kafka has acknowledged the record
+    private CompletableFuture<Void> expectKafkaAck(MessageBuilder<?> messageBuilder,
+        String correlationId) {
+        CompletableFuture<Void> acked = new CompletableFuture<>();
+        pendingKafkaAcks.put(correlationId, acked);
+        messageBuilder.setHeader(CORRELATION_ID_HEADER, correlationId);
+        return acked;
+    }
+
+    // Requires errorChannelEnabled on the producer bindings, a failed Kafka send is reported with
+    // the sent message including its headers
+    private void onSendFailure(Message<?> message) {
+        if (message.getPayload() instanceof MessagingException ex && ex.getFailedMessage() != null) {
+            String correlationId = ex.getFailedMessage().getHeaders()
+                .get(CORRELATION_ID_HEADER, String.class);
+            CompletableFuture<Void> acked = correlationId == null ? null
+                : pendingKafkaAcks.remove(correlationId);
+            if (acked != null) {
+                acked.completeExceptionally(new ServiceUnavailableException(
+                    "Event rejected by broker: " + ex.getMessage(), ex));
+            }
+        }
+    }
+
+    private void onKafkaAck(Message<?> message) {
+        String correlationId = message.getHeaders().get(CORRELATION_ID_HEADER, String.class);
+        CompletableFuture<Void> acked = correlationId == null ? null
+            : pendingKafkaAcks.remove(correlationId);
+        if (acked != null) {
+            acked.complete(null);
+        }
+    }
+
+    private void count(String bindingName, String result) {
+        meterRegistry.counter("composite.events.published", "binding", bindingName, "result",
+            result).increment();
+    }
+}
@@ -0,0 +1,33 @@
+package se.magnus.microservices.composite.product.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.messaging.SubscribableChannel;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration(proxyBeanMethods = false)
+@Slf4j
+public class EventPublisherConfig {
+
+    // Receives the records acknowledged by Kafka, see recordMetadataChannel in the Kafka bindings
+    @Bean
+    public SubscribableChannel eventPublisherAcks() {
+        return new PublishSubscribeChannel();
+    }
+
+    // The binders may block while handing over a message, e.g. Rabbit under flow control or while
+    // connecting to a broker that is down, so the hand-over never runs on an event loop thread
+    @Bean(destroyMethod = "dispose")
+    public Scheduler publishEventScheduler(
+        @Value("${app.event-publishing.thread-pool-size:10}") int threadPoolSize,
+        @Value("${app.event-publishing.task-queue-size:100}") int taskQueueSize) {
+
+        log.info("Creates a publishEventScheduler with threadPoolSize = {}, taskQueueSize = {}",
+            threadPoolSize, taskQueueSize);
+        return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "publish-pool");
+    }
+}
@@ -0,0 +1,50 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+@Configuration
+@Slf4j
+public class HttpClientConfig {
+
+    private final boolean h2c;
+    private final int maxConnections;
+    private final Duration pendingAcquireTimeout;
+
+    public HttpClientConfig(
+        @Value("${app.http-client.h2c:false}") boolean h2c,
+        @Value("${app.http-client.max-connections:500}") int maxConnections,
+        @Value("${app.http-client.pending-acquire-timeout:45s}") Duration pendingAcquireTimeout) {
+        this.h2c = h2c;
+        this.maxConnections = maxConnections;
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+    }
+
+    // Picked up by the auto-configured WebClient.Builder, i.e. used for all calls to the core services
+    @Bean
+    public ClientHttpConnector clientHttpConnector() {
+        log.info("Creates a HTTP client connector, h2c = {}, maxConnections = {}", h2c,
+            maxConnections);
+
+        // With h2c, each connection multiplexes concurrent requests as HTTP/2 streams, so a few
+        // connections per core service instance are enough
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("core-services")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            .metrics(true)
+            .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .protocol(h2c ? HttpProtocol.H2C : HttpProtocol.HTTP11);
+
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
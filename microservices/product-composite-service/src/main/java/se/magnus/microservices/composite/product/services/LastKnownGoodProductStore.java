@@ -0,0 +1,57 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.magnus.api.core.product.Product;
+
+@Component
+@Slf4j
+public class LastKnownGoodProductStore {
+
+    private final Cache<Integer, Product> store;
+
+    public LastKnownGoodProductStore(
+        @Value("${app.product-fallback.maximum-size:10000}") long maximumSize,
+        @Value("${app.product-fallback.max-staleness:1h}") Duration maxStaleness,
+        MeterRegistry meterRegistry) {
+
+        log.info("Creates a last known good product store with maximumSize = {}, maxStaleness = {}",
+            maximumSize, maxStaleness);
+        this.store = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(maxStaleness)
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, store, "lastKnownGoodProducts");
+    }
+
+    public void put(Product product) {
+        if (!(product instanceof StaleProduct)) {
+            store.put(product.getProductId(), copy(product));
+        }
+    }
+
+    public Optional<Product> getStale(int productId) {
+        return Optional.ofNullable(store.getIfPresent(productId)).map(StaleProduct::new);
+    }
+
+    public void invalidate(int productId) {
+        store.invalidate(productId);
+    }
+
+    // Product is mutable, never hand out or keep the instance of a caller
+    private Product copy(Product product) {
+        Product copy = new Product(product.getProductId(), product.getName(), product.getWeight(),
+            product.getServiceAddress());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+}
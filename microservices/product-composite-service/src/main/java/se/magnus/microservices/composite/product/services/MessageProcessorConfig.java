@@ -0,0 +1,64 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import se.magnus.api.event.Event;
+
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+@RequiredArgsConstructor
+public class MessageProcessorConfig {
+
+    private final ProductAggregateCache productAggregateCache;
+    private final AggregateReadModel readModel;
+
+    @Bean
+    public Consumer<Event<Integer, Map<String, Object>>> aggregateCacheInvalidator() {
+        return event -> {
+            int productId = getProductId(event);
+            log.debug("Process {} message created at {} for productId: {}", event.getEventType(),
+                event.getEventCreatedAt(), productId);
+            productAggregateCache.invalidate(productId);
+        };
+    }
+
+    @Bean
+    public Consumer<Message<Event<Integer, Map<String, Object>>>> readModelUpdater() {
+        return message -> {
+            Event<Integer, Map<String, Object>> event = message.getPayload();
+            String topic = getTopic(message);
+            log.debug("Apply {} message created at {} from {} to the read model",
+                event.getEventType(), event.getEventCreatedAt(), topic);
+            try {
+                readModel.apply(topic, event);
+            } finally {
+                // Only Kafka has partitions and offsets to track the replay with
+                MessageHeaders headers = message.getHeaders();
+                if (headers.get("kafka_receivedPartitionId") instanceof Integer partition
+                    && headers.get("kafka_offset") instanceof Long offset) {
+                    readModel.consumed(topic, partition, offset);
+                }
+            }
+        };
+    }
+
+    private String getTopic(Message<?> message) {
+        Object topic = message.getHeaders().get("kafka_receivedTopic");
+        return String.valueOf(topic != null ? topic
+            : message.getHeaders().get("amqp_receivedExchange"));
+    }
+
+    private int getProductId(Event<Integer, Map<String, Object>> event) {
+        // Create events for recommendations and reviews are keyed by their own id
+        if (event.getData() != null && event.getData().get("productId") instanceof Number id) {
+            return id.intValue();
+        }
+        return event.getKey();
+    }
+}
@@ -0,0 +1,179 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import se.magnus.util.http.RequestDeadline;
+
+// Collects the keys that are requested within a short window and loads them with one multi-id
+// call, the result is split per key and handed to each caller. Callers of the same key in a
+// window share the result
+public class MicroBatcher<K, V> {
+
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Predicate<K> batchable;
+    private final Function<List<K>, Flux<V>> loader;
+    private final Function<V, K> keyOf;
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+
+    private Batch pending;
+
+    public MicroBatcher(String operation, Duration window, int maxBatchSize,
+        Predicate<K> batchable, Function<List<K>, Flux<V>> loader, Function<V, K> keyOf,
+        MeterRegistry meterRegistry) {
+
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.batchable = batchable;
+        this.loader = loader;
+        this.keyOf = keyOf;
+        this.batchSize = DistributionSummary.builder("composite.batch.size")
+            .tag("operation", operation)
+            .register(meterRegistry);
+        this.batchWait = Timer.builder("composite.batch.wait")
+            .tag("operation", operation)
+            .register(meterRegistry);
+        Gauge.builder("composite.batch.window", window, Duration::toMillis)
+            .tag("operation", operation)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    public Mono<List<V>> load(K key) {
+        // A key that the multi-id call rejects, e.g. an invalid id, would fail every caller in
+        // the window, it is loaded on its own instead
+        if (!batchable.test(key)) {
+            return Flux.defer(() -> loader.apply(List.of(key))).collectList();
+        }
+
+        return Mono.deferContextual(context -> {
+            Batch batch;
+            Sinks.One<List<V>> result;
+            boolean full;
+
+            synchronized (this) {
+                if (pending == null) {
+                    Batch scheduled = new Batch(context);
+                    pending = scheduled;
+                    Schedulers.parallel().schedule(() -> flush(scheduled), window.toNanos(),
+                        TimeUnit.NANOSECONDS);
+                }
+                batch = pending;
+                result = batch.sinks.computeIfAbsent(key, k -> Sinks.one());
+                batch.join(context);
+                full = batch.sinks.size() >= maxBatchSize;
+            }
+
+            if (full) {
+                flush(batch);
+            }
+            // Each waiter waits within its own deadline, the load is not cut short by it
+            return RequestDeadline.within(result.asMono().doOnCancel(() -> cancel(batch)));
+        });
+    }
+
+    // Called when the window has passed or when the batch is full, whatever happens first, the
+    // second call for the same batch finds it already taken
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = null;
+        }
+
+        batchSize.record(batch.sinks.size());
+        batchWait.record(System.nanoTime() - batch.start, TimeUnit.NANOSECONDS);
+
+        // The load runs on behalf of the waiters, i.e. with the trace and security context of the
+        // first of them and the latest deadline of all of them
+        Disposable load = Flux.defer(() -> loader.apply(new ArrayList<>(batch.sinks.keySet())))
+            .collectMultimap(keyOf)
+            .contextWrite(batch.getLoadContext())
+            .subscribe(
+                results -> batch.sinks.forEach(
+                    (key, sink) -> sink.tryEmitValue(toList(results.get(key)))),
+                error -> batch.sinks.values().forEach(sink -> sink.tryEmitError(error)));
+
+        boolean cancelled;
+        synchronized (this) {
+            batch.load = load;
+            cancelled = batch.waiters == 0;
+        }
+        if (cancelled) {
+            load.dispose();
+        }
+    }
+
+    // The load is cancelled when the last of its waiters has cancelled, a batch that is not
+    // flushed yet is dropped
+    private void cancel(Batch batch) {
+        Disposable load;
+        synchronized (this) {
+            if (--batch.waiters > 0) {
+                return;
+            }
+            if (pending == batch) {
+                pending = null;
+                return;
+            }
+            load = batch.load;
+        }
+        if (load != null) {
+            load.dispose();
+        }
+    }
+
+    private List<V> toList(Collection<V> values) {
+        return values == null ? List.of() : new ArrayList<>(values);
+    }
+
+    private final class Batch {
+
+        private final Map<K, Sinks.One<List<V>>> sinks = new LinkedHashMap<>();
+        private final long start = System.nanoTime();
+        private final ContextView context;
+        private int waiters;
+        private boolean withoutDeadline;
+        private long latestDeadline;
+        private Disposable load;
+
+        private Batch(ContextView context) {
+            this.context = context;
+        }
+
+        // Called while holding the lock of the batcher
+        private void join(ContextView waiter) {
+            waiters++;
+            RequestDeadline.getDeadline(waiter).ifPresentOrElse(
+                deadline -> latestDeadline = Math.max(latestDeadline, deadline),
+                () -> withoutDeadline = true);
+        }
+
+        // Called once the batch has been taken, i.e. no waiter joins anymore
+        private Context getLoadContext() {
+            Context loadContext = Context.of(context);
+            return withoutDeadline ? RequestDeadline.withoutDeadline(loadContext)
+                : RequestDeadline.withDeadline(loadContext, latestDeadline);
+        }
+    }
+}
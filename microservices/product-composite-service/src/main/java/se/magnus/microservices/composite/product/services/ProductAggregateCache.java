@@ -0,0 +1,87 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import se.magnus.api.composite.product.ProductAggregate;
+
+@Component
+@Slf4j
+public class ProductAggregateCache {
+
+    private final boolean enabled;
+    private final Duration invalidationDelay;
+    private final Cache<Integer, ProductAggregate> cache;
+
+    public ProductAggregateCache(
+        @Value("${app.product-aggregate-cache.enabled:true}") boolean enabled,
+        @Value("${app.product-aggregate-cache.maximum-size:10000}") long maximumSize,
+        @Value("${app.product-aggregate-cache.time-to-live:60s}") Duration timeToLive,
+        @Value("${app.product-aggregate-cache.invalidation-delay:1s}") Duration invalidationDelay,
+        MeterRegistry meterRegistry) {
+
+        log.info("Creates a product aggregate cache with maximumSize = {}, timeToLive = {}",
+            maximumSize, timeToLive);
+        this.enabled = enabled;
+        this.invalidationDelay = invalidationDelay;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productAggregates");
+    }
+
+    public Mono<ProductAggregate> get(int productId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.justOrEmpty(cache.getIfPresent(productId));
+    }
+
+    public void put(ProductAggregate aggregate) {
+        // Aggregates built from fallback data or with omitted sections shall not outlive the outage
+        if (enabled && !aggregate.stale() && isEmpty(aggregate.degradedSections())) {
+            cache.put(aggregate.productId(), aggregate);
+        }
+    }
+
+    // The most frequently used aggregates first, as far as the eviction policy has seen them
+    public List<ProductAggregate> hottest(int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        return cache.policy().eviction()
+            .map(eviction -> List.copyOf(eviction.hottest(limit).values()))
+            .orElse(List.of());
+    }
+
+    // Removes the aggregate only if it has not been replaced in the meantime
+    public void remove(ProductAggregate aggregate) {
+        cache.asMap().remove(aggregate.productId(), aggregate);
+    }
+
+    private boolean isEmpty(List<String> sections) {
+        return sections == null || sections.isEmpty();
+    }
+
+    public void invalidate(int productId) {
+        log.debug("Invalidates cached composite product for productId: {}", productId);
+        cache.invalidate(productId);
+
+        // The core services apply the same event asynchronously, invalidate once more when they
+        // are expected to be done so that an aggregate read in between is not kept until it expires
+        Schedulers.parallel().schedule(() -> cache.invalidate(productId),
+            invalidationDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
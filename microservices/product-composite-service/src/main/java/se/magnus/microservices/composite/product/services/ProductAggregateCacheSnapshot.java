@@ -0,0 +1,194 @@
+package se.magnus.microservices.composite.product.services;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+// Writes the hottest cached aggregates to a local file when the instance is shut down and loads
+// them into the cache of the next instance before it reports ready. Loaded aggregates are served
+// right away and compared with the versions of the core services in the background
+@Component
+@Slf4j
+public class ProductAggregateCacheSnapshot {
+
+    private static final TypeReference<List<ProductAggregate>> AGGREGATES = new TypeReference<>() {
+    };
+
+    private final boolean enabled;
+    private final Path file;
+    private final int maxEntries;
+    private final int revalidationBatchSize;
+    private final ProductAggregateCache cache;
+    private final ProductCompositeIntegration integration;
+    private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+
+    private List<ProductAggregate> loaded = List.of();
+    private Disposable revalidation;
+
+    public ProductAggregateCacheSnapshot(
+        @Value("${app.product-aggregate-cache.snapshot.enabled:false}") boolean enabled,
+        @Value("${app.product-aggregate-cache.snapshot.file:/tmp/product-composite-cache.json}") Path file,
+        @Value("${app.product-aggregate-cache.snapshot.max-entries:1000}") int maxEntries,
+        @Value("${app.product-aggregate-cache.snapshot.revalidation-batch-size:50}") int revalidationBatchSize,
+        ProductAggregateCache cache,
+        ProductCompositeIntegration integration,
+        ObjectMapper mapper,
+        MeterRegistry meterRegistry) {
+
+        this.enabled = enabled;
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.revalidationBatchSize = revalidationBatchSize;
+        this.cache = cache;
+        this.integration = integration;
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Runs while the context is refreshed, i.e. before the readiness state is ACCEPTING_TRAFFIC
+    @PostConstruct
+    public void load() {
+        if (!enabled || !Files.exists(file)) {
+            return;
+        }
+
+        try {
+            loaded = mapper.readValue(file.toFile(), AGGREGATES);
+            loaded.forEach(cache::put);
+            log.info("Loaded {} product aggregates from the cache snapshot {}", loaded.size(), file);
+        } catch (IOException ex) {
+            log.warn("Ignores the unreadable cache snapshot {}: {}", file, ex.toString());
+            loaded = List.of();
+        } finally {
+            // A snapshot is only used once, a crash shall not bring back aggregates of an older run
+            deleteSnapshot();
+        }
+        meterRegistry.counter("composite.cache.snapshot.loaded").increment(loaded.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void revalidate() {
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        List<ProductAggregate> aggregates = loaded;
+        loaded = List.of();
+        revalidation = Flux.fromIterable(aggregates)
+            .buffer(revalidationBatchSize)
+            .concatMap(batch -> revalidate(batch)
+                .onErrorResume(ex -> {
+                    // The entries expire with the time to live of the cache instead
+                    log.warn("Failed to revalidate {} snapshot aggregates: {}", batch.size(),
+                        ex.toString());
+                    return Mono.just(0);
+                }))
+            .reduce(0, Integer::sum)
+            .subscribe(removed -> log.info("Revalidated {} snapshot aggregates, removed {}",
+                aggregates.size(), removed));
+    }
+
+    @PreDestroy
+    public void save() {
+        if (revalidation != null) {
+            revalidation.dispose();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        // With a graceful shutdown the web server has finished the ongoing requests by now
+        List<ProductAggregate> hottest = cache.hottest(maxEntries);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            mapper.writeValue(tmp.toFile(), hottest);
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            log.info("Saved {} product aggregates to the cache snapshot {}", hottest.size(), file);
+        } catch (IOException ex) {
+            log.warn("Failed to save the cache snapshot {}: {}", file, ex.toString());
+        }
+    }
+
+    // Uses the batch endpoints of the core services, i.e. three calls per batch instead of
+    // three calls per aggregate. Versions alone are not enough, a deleted and recreated entity
+    // starts over at the same version, the content is compared through the ETag of the aggregate
+    private Mono<Integer> revalidate(List<ProductAggregate> batch) {
+        List<Integer> productIds = batch.stream().map(ProductAggregate::productId).toList();
+
+        return Mono.zip(
+                integration.getProducts(productIds).collectMap(Product::getProductId),
+                integration.getRecommendations(productIds)
+                    .collectMultimap(Recommendation::getProductId),
+                integration.getReviews(productIds).collectMultimap(Review::getProductId))
+            .map(current -> {
+                int removed = 0;
+                for (ProductAggregate aggregate : batch) {
+                    int productId = aggregate.productId();
+                    Product product = current.getT1().get(productId);
+                    if (product == null || !ProductAggregateETag.of(normalize(aggregate)).equals(
+                        ProductAggregateETag.of(createAggregate(product,
+                            current.getT2().get(productId), current.getT3().get(productId))))) {
+                        cache.remove(aggregate);
+                        removed++;
+                    }
+                }
+                return removed;
+            });
+    }
+
+    private ProductAggregate createAggregate(Product product,
+        Collection<Recommendation> recommendations, Collection<Review> reviews) {
+        return normalize(new ProductAggregate(product.getProductId(), product.getName(),
+            product.getWeight(),
+            orEmpty(recommendations).stream().map(r -> new RecommendationSummary(
+                r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(),
+                r.getVersion())).toList(),
+            orEmpty(reviews).stream().map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(),
+                r.getSubject(), r.getContent(), r.getVersion())).toList(),
+            null, false, List.of(), product.getVersion()));
+    }
+
+    // The order of the sections depends on the endpoint that returned them, the ETag does not
+    // ignore it
+    private ProductAggregate normalize(ProductAggregate aggregate) {
+        return new ProductAggregate(aggregate.productId(), aggregate.name(), aggregate.weight(),
+            orEmpty(aggregate.recommendations()).stream()
+                .sorted(Comparator.comparingInt(RecommendationSummary::getRecommendationId))
+                .toList(),
+            orEmpty(aggregate.reviews()).stream()
+                .sorted(Comparator.comparingInt(ReviewSummary::getReviewId))
+                .toList(),
+            null, false, List.of(), aggregate.version());
+    }
+
+    private <T> Collection<T> orEmpty(Collection<T> values) {
+        return values == null ? List.of() : values;
+    }
+}
@@ -0,0 +1,50 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+
+// Weak ETag of a product aggregate, built from the ids and versions of its entities. The fields
+// of the entities are included as well since a deleted and recreated entity starts over at the
+// same version. Service addresses differ per instance and are left out
+public final class ProductAggregateETag {
+
+    private ProductAggregateETag() {
+    }
+
+    public static String of(ProductAggregate aggregate) {
+        StringBuilder key = new StringBuilder()
+            .append(aggregate.productId()).append('/').append(aggregate.version()).append('/')
+            .append(aggregate.name()).append('/').append(aggregate.weight()).append('/')
+            .append(aggregate.stale()).append('/').append(aggregate.degradedSections());
+
+        for (RecommendationSummary r : orEmpty(aggregate.recommendations())) {
+            key.append("|r").append(r.getRecommendationId()).append('/').append(r.getVersion())
+                .append('/').append(r.getAuthor()).append('/').append(r.getRate())
+                .append('/').append(r.getContent());
+        }
+        for (ReviewSummary r : orEmpty(aggregate.reviews())) {
+            key.append("|v").append(r.getReviewId()).append('/').append(r.getVersion())
+                .append('/').append(r.getAuthor()).append('/').append(r.getSubject())
+                .append('/').append(r.getContent());
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return "W/\"" + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+}
@@ -3,24 +3,38 @@ package se.magnus.microservices.composite.product.services;
 import static java.util.logging.Level.FINE;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
-import static reactor.core.publisher.Flux.empty;
+import static java.util.stream.Collectors.joining;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.retry.RetryRegistry;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.boot.actuate.health.Health;
-import org.springframework.cloud.stream.function.StreamBridge;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -29,7 +43,6 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.core.recommendation.Recommendation;
@@ -37,10 +50,13 @@ import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.DeadlineExceededException;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
 import se.magnus.util.http.HttpErrorInfo;
-import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.http.RequestDeadline;
+import se.magnus.util.http.RequestDeadlineExchangeFilter;
 
 @Component
 @Slf4j
@@ -50,27 +66,108 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     private static final String PRODUCT_SERVICE_URL = "http://product";
     private static final String RECOMMENDATION_SERVICE_URL = "http://recommendation";
     private static final String REVIEW_SERVICE_URL = "http://review";
+    private static final MediaType APPLICATION_SMILE =
+        MediaType.parseMediaType("application/x-jackson-smile");
     private final WebClient webClient;
     private final ObjectMapper mapper;
-    private final StreamBridge streamBridge;
-
-    private final Scheduler publishEventScheduler;
-    private final ServiceUtil serviceUtil;
+    private final ObjectMapper smileMapper;
+
+    private final EventPublisher eventPublisher;
+    private final EventOutbox eventOutbox;
+    private final ProductAggregateCache productAggregateCache;
+    private final ProductHedger productHedger;
+    private final LastKnownGoodProductStore lastKnownGoodProducts;
+    private final SingleFlight<Integer, Product> productFlight;
+    private final SingleFlight<Integer, List<Recommendation>> recommendationsFlight;
+    private final SingleFlight<Integer, List<Review>> reviewsFlight;
+    private final Bulkhead productBulkhead;
+    private final Bulkhead recommendationBulkhead;
+    private final Bulkhead reviewBulkhead;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker productCircuitBreaker;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker recommendationCircuitBreaker;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker reviewCircuitBreaker;
+    private final io.github.resilience4j.timelimiter.TimeLimiter productTimeLimiter;
+    private final io.github.resilience4j.timelimiter.TimeLimiter recommendationTimeLimiter;
+    private final io.github.resilience4j.timelimiter.TimeLimiter reviewTimeLimiter;
+    private final io.github.resilience4j.retry.Retry productRetry;
+    private final MicroBatcher<Integer, Product> productBatcher;
+    private final MicroBatcher<Integer, Recommendation> recommendationsBatcher;
+    private final MicroBatcher<Integer, Review> reviewsBatcher;
+    private final Duration productRetryWait;
 
     @Autowired
     public ProductCompositeIntegration(
-        @Qualifier("publishEventScheduler") Scheduler publishEventScheduler,
+        EventPublisher eventPublisher,
+        EventOutbox eventOutbox,
         WebClient.Builder webClient,
         ObjectMapper mapper,
-        StreamBridge streamBridge,
-        ServiceUtil serviceUtil) {
-
-        this.publishEventScheduler = publishEventScheduler;
+        ProductAggregateCache productAggregateCache,
+        ProductHedger productHedger,
+        AdaptiveConcurrencyLimiter concurrencyLimiter,
+        LastKnownGoodProductStore lastKnownGoodProducts,
+        BulkheadRegistry bulkheadRegistry,
+        @Value("${app.http-client.smile:true}") boolean smile,
+        CircuitBreakerRegistry circuitBreakerRegistry,
+        TimeLimiterRegistry timeLimiterRegistry,
+        RetryRegistry retryRegistry,
+        MeterRegistry meterRegistry,
+        @Value("${app.micro-batching.enabled:false}") boolean microBatching,
+        @Value("${app.micro-batching.window:2ms}") Duration batchWindow,
+        @Value("${app.micro-batching.max-batch-size:50}") int maxBatchSize,
+        @Value("${resilience4j.retry.instances.product.wait-duration:1000}")
+        Duration productRetryWait) {
+
+        this.eventPublisher = eventPublisher;
+        this.eventOutbox = eventOutbox;
+        // The core services answer in Smile, a binary JSON format that is cheaper to decode,
+        // other endpoints, e.g. actuator, fall back to JSON
+        if (smile) {
+            webClient.defaultHeaders(headers -> headers.setAccept(
+                List.of(APPLICATION_SMILE, MediaType.parseMediaType("application/json;q=0.9"))));
+        }
         this.webClient = webClient
+            .filter(new RequestDeadlineExchangeFilter())
+            .filter(concurrencyLimiter)
             .build();
         this.mapper = mapper;
-        this.streamBridge = streamBridge;
-        this.serviceUtil = serviceUtil;
+        this.smileMapper = mapper.copyWith(new SmileFactory());
+        this.productAggregateCache = productAggregateCache;
+        this.productHedger = productHedger;
+        this.lastKnownGoodProducts = lastKnownGoodProducts;
+        this.productFlight = new SingleFlight<>("product", meterRegistry);
+        this.recommendationsFlight = new SingleFlight<>("recommendations", meterRegistry);
+        this.reviewsFlight = new SingleFlight<>("reviews", meterRegistry);
+        this.productBulkhead = bulkheadRegistry.bulkhead("product");
+        this.recommendationBulkhead = bulkheadRegistry.bulkhead("recommendation");
+        this.reviewBulkhead = bulkheadRegistry.bulkhead("review");
+        this.productCircuitBreaker = circuitBreakerRegistry.circuitBreaker("product");
+        this.recommendationCircuitBreaker = circuitBreakerRegistry.circuitBreaker("recommendation");
+        this.reviewCircuitBreaker = circuitBreakerRegistry.circuitBreaker("review");
+        this.productTimeLimiter = timeLimiterRegistry.timeLimiter("product");
+        this.recommendationTimeLimiter = timeLimiterRegistry.timeLimiter("recommendation");
+        this.reviewTimeLimiter = timeLimiterRegistry.timeLimiter("review");
+        this.productRetry = retryRegistry.retry("product");
+
+        // Calls for different productIds within the window are sent as one multi-id call per
+        // core service, at the cost of up to one window of extra latency
+        if (microBatching) {
+            log.info("Batches calls to the core services, window = {}, maxBatchSize = {}",
+                batchWindow, maxBatchSize);
+            // The core services reject a multi-id call as a whole if one of the ids is invalid
+            this.productBatcher = new MicroBatcher<>("product", batchWindow, maxBatchSize,
+                id -> id >= 1, this::getProducts, Product::getProductId, meterRegistry);
+            this.recommendationsBatcher = new MicroBatcher<>("recommendations", batchWindow,
+                maxBatchSize, id -> id >= 1, ids -> getRecommendations(ids),
+                Recommendation::getProductId, meterRegistry);
+            this.reviewsBatcher = new MicroBatcher<>("reviews", batchWindow, maxBatchSize,
+                id -> id >= 1, ids -> getReviews(ids), Review::getProductId, meterRegistry);
+        } else {
+            this.productBatcher = null;
+            this.recommendationsBatcher = null;
+            this.reviewsBatcher = null;
+        }
+
+        this.productRetryWait = productRetryWait;
     }
 
     @Retry(name = "product")
@@ -83,26 +180,94 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
             .build(productId, delay, faultPercent);
         log.debug("Will call the getProduct API on URL: {}", url);
 
-        return webClient.get().uri(url).retrieve().bodyToMono(Product.class)
+        // The deadline bounds the whole call including decoding the body, i.e. the time limiter
+        // is cut down to the remaining budget
+        Supplier<Mono<Product>> call = () -> RequestDeadline.within(webClient.get().uri(url)
+                .retrieve().bodyToMono(Product.class))
+            .log(log.getName(), FINE)
+            .onErrorMap(WebClientException.class, ex -> handleException(ex))
+            .transform(this::withRetryBudget)
+            .transform(withBulkhead(productBulkhead))
+            .doOnNext(lastKnownGoodProducts::put);
+
+        // Calls with fault injection are not shared, each one shall see its own outcome
+        if (delay != 0 || faultPercent != 0) {
+            return call.get();
+        }
+        if (productBatcher != null) {
+            call = () -> productBatcher.load(productId)
+                .flatMap(products -> products.isEmpty()
+                    ? Mono.error(new NotFoundException("No product found for productId: " + productId))
+                    : Mono.just(products.getFirst()))
+                .doOnNext(lastKnownGoodProducts::put);
+        }
+        Supplier<Mono<Product>> productCall = call;
+        return productFlight.execute(productId, () -> productHedger.hedge(productCall));
+    }
+
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        String url = PRODUCT_SERVICE_URL + "/product?productIds=" + toQueryValue(productIds);
+
+        log.debug("Will call the getProducts API on URL: {}", url);
+
+        return RequestDeadline.within(webClient.get().uri(url).retrieve()
+                .bodyToFlux(Product.class))
             .log(log.getName(), FINE)
-            .onErrorMap(WebClientException.class, ex -> handleException(ex));
+            .onErrorMap(WebClientException.class, ex -> handleException(ex))
+            .transform(withBulkhead(productBulkhead));
+    }
+
+    @Override
+    public Flux<Product> getProductPage(int page, int size) {
+        String url = PRODUCT_SERVICE_URL + "/product?page=" + page + "&size=" + size;
+
+        log.debug("Will call the getProductPage API on URL: {}", url);
+
+        // Same resilience as getProduct, the page is collected so that a retry can't emit
+        // products twice
+        return RequestDeadline.within(webClient.get().uri(url).retrieve()
+                .bodyToFlux(Product.class))
+            .log(log.getName(), FINE)
+            .onErrorMap(WebClientException.class, ex -> handleException(ex))
+            .collectList()
+            .transform(this::withRetryBudget)
+            .transform(withBulkhead(productBulkhead))
+            .transform(TimeLimiterOperator.of(productTimeLimiter))
+            .transform(CircuitBreakerOperator.of(productCircuitBreaker))
+            .transform(RetryOperator.of(productRetry))
+            .flatMapIterable(products -> products);
     }
 
     public Mono<Product> getProductFallbackValue(int productId, int delay, int faultPercent,
         CallNotPermittedException ex) {
 
-        if (productId == 13) {
+        log.warn("Circuit breaker is open, serves the last known product for productId: {}",
+            productId);
+
+        return lastKnownGoodProducts.getStale(productId).map(Mono::just).orElseThrow(() -> {
             String errMsg = """ 
                 Product Id: %s not found in fallback cache!
                 """.formatted(productId);
-            throw new NotFoundException(errMsg);
-        }
-
-        return Mono.just(new Product(productId, "Fallback product" + productId, productId,
-            serviceUtil.getServiceAddress()));
+            return new NotFoundException(errMsg);
+        });
     }
 
 
+    // A retry that would only start after the deadline is not worth its wait, the error is
+    // reported as an exceeded deadline instead, which is neither retried nor counted by the
+    // circuit breaker
+    private <T> Mono<T> withRetryBudget(Mono<T> call) {
+        return Mono.deferContextual(context -> call.onErrorMap(
+            WebClientResponseException.InternalServerError.class,
+            ex -> RequestDeadline.getDeadline(context)
+                .filter(deadline ->
+                    deadline - System.currentTimeMillis() < productRetryWait.toMillis())
+                .<Throwable>map(deadline -> new DeadlineExceededException(
+                    "No budget left to retry the call: " + ex.getMessage(), ex))
+                .orElse(ex)));
+    }
+
     private Throwable handleException(Throwable ex) {
         if (!(ex instanceof WebClientResponseException wcre)) {
             log.warn("Got a unexpected error: {}, will rethrow it", ex.toString());
@@ -122,22 +287,27 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
     @Override
     public Mono<Product> createProduct(Product body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("products-out-0", new Event<>(CREATE, body.getProductId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("products-out-0",
+                new Event<>(CREATE, body.getProductId(), body))
+            .doOnSuccess(v -> productAggregateCache.invalidate(body.getProductId()))
+            .thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteProduct(int productId) {
-        return Mono.fromRunnable(() -> {
-            sendMessage("products-out-0", new Event(DELETE, productId, null));
-        }).subscribeOn(publishEventScheduler).then();
+        return publish("products-out-0", new Event(DELETE, productId, null))
+            .doOnSuccess(v -> {
+                productAggregateCache.invalidate(productId);
+                lastKnownGoodProducts.invalidate(productId);
+            });
     }
 
     private String getErrorMessage(WebClientResponseException ex) {
         try {
-            return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+            ObjectMapper errorMapper = APPLICATION_SMILE.isCompatibleWith(
+                ex.getHeaders().getContentType()) ? smileMapper : mapper;
+            return errorMapper.readValue(ex.getResponseBodyAsByteArray(), HttpErrorInfo.class)
+                .getMessage();
         } catch (IOException ioex) {
             return ex.getMessage();
         }
@@ -149,24 +319,62 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
         log.debug("Will call the getRecommendations API on URL: {}", url);
 
-        return webClient.get().uri(url).retrieve().bodyToFlux(Recommendation.class)
-            .log(log.getName(), FINE).onErrorResume(error -> empty());
+        if (recommendationsBatcher != null) {
+            return recommendationsFlight.execute(productId,
+                    () -> recommendationsBatcher.load(productId))
+                .flatMapIterable(recommendations -> recommendations);
+        }
+
+        return recommendationsFlight.execute(productId,
+                () -> RequestDeadline.within(webClient.get().uri(url).retrieve()
+                        .bodyToFlux(Recommendation.class))
+                    .log(log.getName(), FINE)
+                    .onErrorMap(WebClientException.class, ex -> handleException(ex))
+                    .transform(withBulkhead(recommendationBulkhead))
+                    .collectList()
+                    .transform(TimeLimiterOperator.of(recommendationTimeLimiter))
+                    .transform(CircuitBreakerOperator.of(recommendationCircuitBreaker)))
+            .flatMapIterable(recommendations -> recommendations);
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendations(List<Integer> productIds) {
+        String url = RECOMMENDATION_SERVICE_URL + "/recommendation?productIds="
+            + toQueryValue(productIds);
+
+        log.debug("Will call the getRecommendations API on URL: {}", url);
+
+        return RequestDeadline.within(webClient.get().uri(url).retrieve()
+                .bodyToFlux(Recommendation.class))
+            .log(log.getName(), FINE)
+            .onErrorMap(WebClientException.class, ex -> handleException(ex))
+            .transform(withBulkhead(recommendationBulkhead))
+            .collectList()
+            .transform(TimeLimiterOperator.of(recommendationTimeLimiter))
+            .transform(CircuitBreakerOperator.of(recommendationCircuitBreaker))
+            .flatMapIterable(recommendations -> recommendations);
     }
 
     @Override
     public Mono<Recommendation> createRecommendation(Recommendation body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("recommendations-out-0",
-                new Event(CREATE, body.getRecommendationId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("recommendations-out-0",
+                new Event(CREATE, body.getRecommendationId(), body))
+            .doOnSuccess(v -> productAggregateCache.invalidate(body.getProductId()))
+            .thenReturn(body);
+    }
+
+    @Override
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        int productId = body.getFirst().getProductId();
+        return publish("recommendations-out-0", Event.createBatch(productId, body))
+            .doOnSuccess(v -> productAggregateCache.invalidate(productId))
+            .thenMany(Flux.fromIterable(body));
     }
 
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
-        return Mono.fromRunnable(() -> {
-            sendMessage("recommendations-out-0", new Event(DELETE, productId, null));
-        }).subscribeOn(publishEventScheduler).then();
+        return publish("recommendations-out-0", new Event(DELETE, productId, null))
+            .doOnSuccess(v -> productAggregateCache.invalidate(productId));
     }
 
     @Override
@@ -175,45 +383,87 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
         log.debug("Will call the getReviews API on URL: {}", url);
 
-        return webClient.get().uri(url).retrieve().bodyToFlux(Review.class)
-            .log(log.getName(), FINE).onErrorResume(error -> empty());
+        if (reviewsBatcher != null) {
+            return reviewsFlight.execute(productId, () -> reviewsBatcher.load(productId))
+                .flatMapIterable(reviews -> reviews);
+        }
+
+        return reviewsFlight.execute(productId,
+                () -> RequestDeadline.within(webClient.get().uri(url).retrieve()
+                        .bodyToFlux(Review.class))
+                    .log(log.getName(), FINE)
+                    .onErrorMap(WebClientException.class, ex -> handleException(ex))
+                    .transform(withBulkhead(reviewBulkhead))
+                    .collectList()
+                    .transform(TimeLimiterOperator.of(reviewTimeLimiter))
+                    .transform(CircuitBreakerOperator.of(reviewCircuitBreaker)))
+            .flatMapIterable(reviews -> reviews);
+
+    }
+
+    @Override
+    public Flux<Review> getReviews(List<Integer> productIds) {
+        String url = REVIEW_SERVICE_URL + "/review?productIds=" + toQueryValue(productIds);
+
+        log.debug("Will call the getReviews API on URL: {}", url);
 
+        return RequestDeadline.within(webClient.get().uri(url).retrieve()
+                .bodyToFlux(Review.class))
+            .log(log.getName(), FINE)
+            .onErrorMap(WebClientException.class, ex -> handleException(ex))
+            .transform(withBulkhead(reviewBulkhead))
+            .collectList()
+            .transform(TimeLimiterOperator.of(reviewTimeLimiter))
+            .transform(CircuitBreakerOperator.of(reviewCircuitBreaker))
+            .flatMapIterable(reviews -> reviews);
     }
 
     @Override
     public Mono<Review> createReview(Review body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("reviews-out-0", new Event(CREATE, body.getReviewId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("reviews-out-0",
+                new Event(CREATE, body.getReviewId(), body))
+            .doOnSuccess(v -> productAggregateCache.invalidate(body.getProductId()))
+            .thenReturn(body);
+    }
+
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        int productId = body.getFirst().getProductId();
+        return publish("reviews-out-0", Event.createBatch(productId, body))
+            .doOnSuccess(v -> productAggregateCache.invalidate(productId))
+            .thenMany(Flux.fromIterable(body));
     }
 
     @Override
     public Mono<Void> deleteReviews(int productId) {
-        return Mono.fromRunnable(() -> {
-            sendMessage("reviews-out-0", new Event(DELETE, productId, null));
-        }).subscribeOn(publishEventScheduler).then();
+        return publish("reviews-out-0", new Event(DELETE, productId, null))
+            .doOnSuccess(v -> productAggregateCache.invalidate(productId));
     }
 
-    public Mono<Health> getProductHealth() {
-        return getHealth(PRODUCT_SERVICE_URL);
+    // With the outbox, an event is accepted once it is in the local journal and is published to
+    // the broker by the relay of the outbox
+    private Mono<Void> publish(String bindingName, Event<?, ?> event) {
+        return eventOutbox.isEnabled() ? eventOutbox.append(bindingName, event)
+            : eventPublisher.publish(bindingName, event);
     }
 
-    public Mono<Health> getRecommendationHealth() {
-        return getHealth(RECOMMENDATION_SERVICE_URL);
+    private <T> Function<Publisher<T>, Publisher<T>> withBulkhead(Bulkhead bulkhead) {
+        return source -> {
+            Publisher<T> guarded = BulkheadOperator.<T>of(bulkhead).apply(source);
+            // A full bulkhead is an overload of this service, not an error in the downstream service
+            return guarded instanceof Mono<T> mono
+                ? mono.onErrorMap(BulkheadFullException.class, this::toServiceUnavailable)
+                : Flux.from(guarded).onErrorMap(BulkheadFullException.class, this::toServiceUnavailable);
+        };
     }
 
-    public Mono<Health> getReviewHealth() {
-        return getHealth(REVIEW_SERVICE_URL);
+    private Throwable toServiceUnavailable(BulkheadFullException ex) {
+        log.warn("Rejected a call: {}", ex.getMessage());
+        return new ServiceUnavailableException(ex.getMessage(), ex);
     }
 
-    private Mono<Health> getHealth(String url) {
-        url += "/actuator/health";
-        log.debug("Will call the Health API on URL: {}", url);
-        return webClient.get().uri(url).retrieve().bodyToMono(String.class)
-            .map(s -> new Health.Builder().up().build())
-            .onErrorResume(ex -> Mono.just(new Health.Builder().down(ex).build()))
-            .log(log.getName(), FINE);
+    private String toQueryValue(List<Integer> productIds) {
+        return productIds.stream().map(String::valueOf).collect(joining(","));
     }
 
     private HttpClientErrorException getHttpClientErrorException(HttpClientErrorException ex) {
@@ -222,15 +472,5 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         return ex;
     }
 
-    private void sendMessage(String bindingName, Event event) {
-        log.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-
-        MessageBuilder<Event> messageBuilder = MessageBuilder.withPayload(event)
-            .setHeader("partitionKey", event.getKey());
-
-        Message message = messageBuilder.build();
-
-        streamBridge.send(bindingName, message);
-    }
 
 }
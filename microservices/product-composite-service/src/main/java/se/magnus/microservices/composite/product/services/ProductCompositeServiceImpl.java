@@ -1,21 +1,36 @@
 package se.magnus.microservices.composite.product.services;
 
 import static java.util.logging.Level.FINE;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.tracing.Span;
 import io.micrometer.tracing.Tracer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.ProductAggregateResult;
 import se.magnus.api.composite.product.ProductCompositeService;
 import se.magnus.api.composite.product.RecommendationSummary;
 import se.magnus.api.composite.product.ReviewSummary;
@@ -23,6 +38,11 @@ import se.magnus.api.composite.product.ServiceAddresses;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.DeadlineExceededException;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.util.http.RequestDeadline;
 import se.magnus.util.http.ServiceUtil;
 
 @RestController
@@ -33,30 +53,159 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
     private final ServiceUtil serviceUtil;
     private final ProductCompositeIntegration integration;
+    private final ProductAggregateCache productAggregateCache;
+    private final AggregateReadModel readModel;
     private final Tracer tracer;
+    private final MeterRegistry meterRegistry;
+    private final int batchConcurrency;
+    private final int batchMaxSize;
+    private final int streamConcurrency;
 
     public ProductCompositeServiceImpl(ServiceUtil serviceUtil,
         ProductCompositeIntegration integration,
-        Tracer tracer) {
+        ProductAggregateCache productAggregateCache,
+        AggregateReadModel readModel,
+        Tracer tracer,
+        MeterRegistry meterRegistry,
+        @Value("${app.product-composite-batch.concurrency:8}") int batchConcurrency,
+        @Value("${app.product-composite-batch.max-size:50}") int batchMaxSize,
+        @Value("${app.product-composite-stream.concurrency:4}") int streamConcurrency) {
         this.serviceUtil = serviceUtil;
         this.integration = integration;
+        this.productAggregateCache = productAggregateCache;
+        this.readModel = readModel;
         this.tracer = tracer;
+        this.meterRegistry = meterRegistry;
+        this.batchConcurrency = batchConcurrency;
+        this.batchMaxSize = batchMaxSize;
+        this.streamConcurrency = streamConcurrency;
     }
 
     @Override
-    public Mono<ProductAggregate> getProduct(int productId, int delay, int faultPercent) {
+    public Mono<ResponseEntity<ProductAggregate>> getProduct(int productId, int delay,
+        int faultPercent, String cacheControl) {
+
+        // WebFlux compares the ETag with If-None-Match and responds with a 304 without a body
+        // when they match, i.e. the aggregate is not serialized
+        return getCachedProductAggregate(productId, delay, faultPercent, cacheControl)
+            .map(aggregate -> ResponseEntity.ok().eTag(ProductAggregateETag.of(aggregate))
+                .body(aggregate));
+    }
+
+    private Mono<ProductAggregate> getCachedProductAggregate(int productId, int delay,
+        int faultPercent, String cacheControl) {
         log.info("Will get composite product info for product.id={}", productId);
+
+        Mono<ProductAggregate> aggregate = Mono.defer(
+                () -> getProductAggregate(productId, delay, faultPercent))
+            .doOnNext(productAggregateCache::put);
+
+        // Fault injection and explicit no-cache requests must reach the core services
+        if (delay != 0 || faultPercent != 0 || isNoCache(cacheControl)) {
+            return aggregate;
+        }
+
+        // In CQRS mode the aggregate is served from the local read model built from the events,
+        // once its replay has caught up
+        if (readModel.isEnabled() && readModel.isCaughtUp()) {
+            return readModel.get(productId);
+        }
+
+        return productAggregateCache.get(productId)
+            .doOnNext(a -> log.debug("Found composite product info for product.id={} in cache",
+                productId))
+            .switchIfEmpty(aggregate);
+    }
+
+    @Override
+    public Flux<ProductAggregateResult> getProducts(List<Integer> productIds) {
+        if (productIds.size() > batchMaxSize) {
+            throw new InvalidInputException(
+                "Too many product ids: " + productIds.size() + ", max is " + batchMaxSize);
+        }
+
+        log.info("Will get composite product info for {} products", productIds.size());
+        return Flux.fromIterable(productIds)
+            .distinct()
+            .flatMapSequential(productId -> getCachedProductAggregate(productId, 0, 0, null)
+                .map(aggregate -> new ProductAggregateResult(productId, OK.value(), aggregate,
+                    null))
+                .onErrorResume(ex -> Mono.just(getErrorResult(productId, ex))), batchConcurrency)
+            .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<ProductAggregate> getProductPage(int page, int size) {
+        if (page < 0 || size < 1 || size > batchMaxSize) {
+            throw new InvalidInputException(
+                "Invalid page: " + page + ", size: " + size + ", max size is " + batchMaxSize);
+        }
+
+        log.info("Will get page {} of composite product info, size {}", page, size);
+        return integration.getProductPage(page, size)
+            .collectList()
+            .flatMapMany(products -> products.isEmpty() ? Flux.empty()
+                : getProductAggregates(products))
+            .log(log.getName(), FINE);
+    }
+
+    @Override
+    public Flux<ProductAggregate> getProductStream(int fromProductId, int toProductId) {
+        if (fromProductId < 1 || toProductId < fromProductId) {
+            throw new InvalidInputException(
+                "Invalid product id range: " + fromProductId + " - " + toProductId);
+        }
+
+        log.info("Will stream composite product info for product.id={} to {}", fromProductId,
+            toProductId);
+
+        // Bulk reads use cached aggregates but do not populate the cache, the fan-out is bounded
+        // and only as many aggregates as the client has requested are kept in memory
+        return Flux.range(fromProductId, toProductId - fromProductId + 1)
+            .flatMapSequential(productId -> productAggregateCache.get(productId)
+                .switchIfEmpty(Mono.defer(() -> getProductAggregate(productId, 0, 0)))
+                .onErrorResume(NotFoundException.class, ex -> Mono.empty()), streamConcurrency, 1)
+            // A stream is paced by its reader, the request deadline does not apply to its elements
+            .contextWrite(RequestDeadline::withoutDeadline)
+            .log(log.getName(), FINE);
+    }
+
+    private ProductAggregateResult getErrorResult(int productId, Throwable ex) {
+        HttpStatus status = switch (ex) {
+            case NotFoundException e -> NOT_FOUND;
+            case InvalidInputException e -> UNPROCESSABLE_ENTITY;
+            case ServiceUnavailableException e -> SERVICE_UNAVAILABLE;
+            case DeadlineExceededException e -> GATEWAY_TIMEOUT;
+            default -> {
+                log.warn("getCompositeProduct failed for product.id={}: {}", productId,
+                    ex.toString());
+                yield INTERNAL_SERVER_ERROR;
+            }
+        };
+        return new ProductAggregateResult(productId, status.value(), null, ex.getMessage());
+    }
+
+    private boolean isNoCache(String cacheControl) {
+        return cacheControl != null && cacheControl.contains("no-cache");
+    }
+
+    private Mono<ProductAggregate> getProductAggregate(int productId, int delay,
+        int faultPercent) {
+        List<String> degradedSections = new CopyOnWriteArrayList<>();
         return Mono.zip(
                 values -> createProductAggregate(
                     (SecurityContext) values[0],
                     (Product) values[1],
                     (List<Recommendation>) values[2],
                     (List<Review>) values[3],
-                    serviceUtil.getServiceAddress()),
+                    serviceUtil.getServiceAddress(),
+                    degradedSections),
                 getSecurityContextMono(),
                 integration.getProduct(productId, delay, faultPercent),
-                integration.getRecommendations(productId).collectList(),
-                integration.getReviews(productId).collectList())
+                integration.getRecommendations(productId).collectList()
+                    .onErrorResume(ex -> degrade("recommendations", productId, ex, degradedSections)),
+                integration.getReviews(productId).collectList()
+                    .onErrorResume(ex -> degrade("reviews", productId, ex, degradedSections)))
 
             .doOnError(ex ->
             {
@@ -70,6 +219,52 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
             .log(log.getName(), FINE);
     }
 
+    // Recommendations and reviews of the whole page are fetched with one call per core service,
+    // i.e. three downstream calls per page instead of three per product
+    private Flux<ProductAggregate> getProductAggregates(List<Product> products) {
+        List<Integer> productIds = products.stream().map(Product::getProductId).toList();
+        List<String> degradedSections = new CopyOnWriteArrayList<>();
+
+        return Mono.zip(
+                getSecurityContextMono(),
+                integration.getRecommendations(productIds)
+                    .collectMultimap(Recommendation::getProductId)
+                    .onErrorResume(ex -> degradePage("recommendations", productIds, ex,
+                        degradedSections)),
+                integration.getReviews(productIds)
+                    .collectMultimap(Review::getProductId)
+                    .onErrorResume(ex -> degradePage("reviews", productIds, ex, degradedSections)))
+            .flatMapIterable(values -> products.stream()
+                .map(product -> createProductAggregate(
+                    values.getT1(),
+                    product,
+                    toList(values.getT2().get(product.getProductId())),
+                    toList(values.getT3().get(product.getProductId())),
+                    serviceUtil.getServiceAddress(),
+                    degradedSections))
+                .toList());
+    }
+
+    private <T> List<T> toList(Collection<T> values) {
+        return values == null ? List.of() : new ArrayList<>(values);
+    }
+
+    private <T> Mono<Map<Integer, Collection<T>>> degradePage(String section,
+        List<Integer> productIds, Throwable ex, List<String> degradedSections) {
+        return degrade(section, productIds, ex, degradedSections).thenReturn(Map.of());
+    }
+
+    // Recommendations and reviews are optional parts of the aggregate, a failing leg is reported
+    // in the response instead of failing the whole request
+    private <T> Mono<List<T>> degrade(String section, Object productId, Throwable ex,
+        List<String> degradedSections) {
+        log.warn("Omits {} for product.id={}: {}", section, productId, ex.toString());
+        meterRegistry.counter("composite.leg.failures", "leg", section, "exception",
+            ex.getClass().getSimpleName()).increment();
+        degradedSections.add(section);
+        return Mono.just(List.of());
+    }
+
     @Override
     public Mono<Void> createProduct(ProductAggregate body) {
         try {
@@ -83,22 +278,31 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
             Product product = new Product(body.productId(), body.name(), body.weight(), null);
             monoList.add(integration.createProduct(product));
 
+            // Many recommendations or reviews are sent as one batch event per entity type
             if (body.recommendations() != null) {
-                body.recommendations().forEach(r -> {
-                    Recommendation recommendation = new Recommendation(body.productId(),
+                List<Recommendation> recommendations = body.recommendations().stream()
+                    .map(r -> new Recommendation(body.productId(),
                         r.getRecommendationId(), r.getAuthor(),
-                        r.getRate(), r.getContent(), null);
-                    monoList.add(integration.createRecommendation(recommendation));
-                });
+                        r.getRate(), r.getContent(), null))
+                    .toList();
+                if (recommendations.size() > 1) {
+                    monoList.add(integration.createRecommendations(recommendations).collectList());
+                } else {
+                    recommendations.forEach(r -> monoList.add(integration.createRecommendation(r)));
+                }
             }
 
             if (body.reviews() != null) {
-                body.reviews().forEach(r -> {
-                    Review review = new Review(body.productId(), r.getReviewId(), r.getAuthor(),
+                List<Review> reviews = body.reviews().stream()
+                    .map(r -> new Review(body.productId(), r.getReviewId(), r.getAuthor(),
                         r.getSubject(),
-                        r.getContent(), null);
-                    monoList.add(integration.createReview(review));
-                });
+                        r.getContent(), null))
+                    .toList();
+                if (reviews.size() > 1) {
+                    monoList.add(integration.createReviews(reviews).collectList());
+                } else {
+                    reviews.forEach(r -> monoList.add(integration.createReview(r)));
+                }
             }
 
             log.debug("createCompositeProduct: composite entities created for productId: {}",
@@ -118,8 +322,9 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         try {
             log.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}",
                 productId);
-            return Mono.zip(
-                    r -> "",
+            // Mono.when waits for all deletes, Mono.zip would cancel the others when the first
+            // empty Mono<Void> completes
+            return Mono.when(
                     getLogAuthorizationInfoMono(),
                     integration.deleteProduct(productId),
                     integration.deleteRecommendations(productId),
@@ -136,7 +341,8 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     private ProductAggregate createProductAggregate(
         SecurityContext sc,
         Product product,
-        List<Recommendation> recommendations, List<Review> reviews, String serviceAddress) {
+        List<Recommendation> recommendations, List<Review> reviews, String serviceAddress,
+        List<String> degradedSections) {
 
         logAuthorizationInfo(sc);
 
@@ -147,12 +353,12 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         List<RecommendationSummary> recommendationSummaries = recommendations == null ? null
             : recommendations.stream().map(
                     r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(),
-                        r.getContent()))
+                        r.getContent(), r.getVersion()))
                 .toList();
 
         List<ReviewSummary> reviewSummaries = reviews == null ? null : reviews.stream()
             .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(),
-                r.getContent())).toList();
+                r.getContent(), r.getVersion())).toList();
 
         String productAddress = product.getServiceAddress();
         String reviewAddress =
@@ -163,8 +369,14 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress,
             reviewAddress, recommendationAddress);
 
+        boolean stale = product instanceof StaleProduct;
+        List<String> degraded = new ArrayList<>(degradedSections);
+        if (stale) {
+            degraded.addFirst("product");
+        }
+
         return new ProductAggregate(productId, name, weight, recommendationSummaries,
-            reviewSummaries, serviceAddresses);
+            reviewSummaries, serviceAddresses, stale, degraded, product.getVersion());
     }
 
     private Mono<SecurityContext> getLogAuthorizationInfoMono() {
@@ -0,0 +1,155 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+@Component
+@Slf4j
+public class ProductHedger {
+
+    private static final double MAX_HEDGE_TOKENS = 10;
+    private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Duration minDelay;
+    private final long minSamples;
+    private final double maxHedgeRatio;
+
+    private final Timer latency;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesThrottled;
+
+    private double hedgeTokens = MAX_HEDGE_TOKENS;
+    private volatile long hedgeDelayNanos = -1;
+    private volatile long hedgeDelayRefreshedAt = 0;
+
+    public ProductHedger(
+        @Value("${app.product-hedging.enabled:false}") boolean enabled,
+        @Value("${app.product-hedging.percentile:0.95}") double percentile,
+        @Value("${app.product-hedging.min-delay:20ms}") Duration minDelay,
+        @Value("${app.product-hedging.min-samples:100}") long minSamples,
+        @Value("${app.product-hedging.max-hedge-ratio:0.1}") double maxHedgeRatio,
+        MeterRegistry meterRegistry) {
+
+        log.info("Creates a product hedger, enabled = {}, percentile = {}, maxHedgeRatio = {}",
+            enabled, percentile, maxHedgeRatio);
+        this.enabled = enabled;
+        this.minDelay = minDelay;
+        this.minSamples = minSamples;
+        this.maxHedgeRatio = maxHedgeRatio;
+
+        this.latency = Timer.builder("composite.hedge.latency")
+            .tag("operation", "product")
+            .publishPercentiles(percentile)
+            .register(meterRegistry);
+        this.hedgesSent = Counter.builder("composite.hedge.sent")
+            .tag("operation", "product")
+            .register(meterRegistry);
+        this.hedgesWon = Counter.builder("composite.hedge.won")
+            .tag("operation", "product")
+            .register(meterRegistry);
+        this.hedgesThrottled = Counter.builder("composite.hedge.throttled")
+            .tag("operation", "product")
+            .register(meterRegistry);
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        return Mono.defer(() -> {
+            depositHedgeToken();
+            long start = now();
+            // A primary call cancelled because the hedge won took at least until then, leaving it
+            // out would bias the percentile, and with it the hedge delay, towards fast calls
+            Mono<T> primary = call.get()
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_ERROR) {
+                        latency.record(now() - start, TimeUnit.NANOSECONDS);
+                    }
+                });
+
+            long delayNanos = getHedgeDelayNanos();
+            if (delayNanos < 0) {
+                return primary;
+            }
+
+            // The first call that signals wins, i.e. an error from the primary call is not hedged
+            // and the call that loses is cancelled. An error from the hedged call never wins, a
+            // hedge sent to a failing instance shall not turn a slow success into a failure
+            Mono<T> hedged = Mono.delay(Duration.ofNanos(delayNanos))
+                .then(Mono.defer(() -> {
+                    if (!tryAcquireHedgeToken()) {
+                        hedgesThrottled.increment();
+                        return Mono.never();
+                    }
+                    log.debug("No product response within {} ms, sends a hedged request",
+                        TimeUnit.NANOSECONDS.toMillis(delayNanos));
+                    hedgesSent.increment();
+                    return call.get()
+                        .doOnSuccess(v -> hedgesWon.increment())
+                        .onErrorResume(ex -> {
+                            log.debug("The hedged request failed: {}", ex.toString());
+                            return Mono.never();
+                        });
+                }));
+
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    // The clock of the scheduler used by Mono.delay, i.e. virtual time in tests
+    private long now() {
+        return Schedulers.parallel().now(TimeUnit.NANOSECONDS);
+    }
+
+    private long getHedgeDelayNanos() {
+        long now = System.nanoTime();
+        if (now - hedgeDelayRefreshedAt > HEDGE_DELAY_REFRESH_NANOS) {
+            hedgeDelayRefreshedAt = now;
+            hedgeDelayNanos = computeHedgeDelayNanos();
+        }
+        return hedgeDelayNanos;
+    }
+
+    private long computeHedgeDelayNanos() {
+        if (latency.count() < minSamples) {
+            return -1;
+        }
+
+        ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+        if (percentiles.length == 0) {
+            return -1;
+        }
+
+        long percentileNanos = (long) percentiles[0].value(TimeUnit.NANOSECONDS);
+        return Math.max(percentileNanos, minDelay.toNanos());
+    }
+
+    // Every request earns a fraction of a hedge, so hedges never exceed the configured ratio
+    // even if all requests are slow, e.g. during an outage
+    private synchronized void depositHedgeToken() {
+        hedgeTokens = Math.min(hedgeTokens + maxHedgeRatio, MAX_HEDGE_TOKENS);
+    }
+
+    private synchronized boolean tryAcquireHedgeToken() {
+        if (hedgeTokens < 1) {
+            return false;
+        }
+        hedgeTokens -= 1;
+        return true;
+    }
+}
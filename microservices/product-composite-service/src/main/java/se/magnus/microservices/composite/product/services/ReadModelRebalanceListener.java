@@ -0,0 +1,33 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.util.Collection;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.cloud.stream.binder.kafka.KafkaBindingRebalanceListener;
+import org.springframework.stereotype.Component;
+
+// Hands the offsets of the partitions that the read model consumer replays to the read model, it
+// has caught up once it has consumed up to the end offsets captured here
+@Component
+@RequiredArgsConstructor
+public class ReadModelRebalanceListener implements KafkaBindingRebalanceListener {
+
+    private static final String BINDING_NAME = "readModelUpdater-in-0";
+
+    private final AggregateReadModel readModel;
+
+    @Override
+    public void onPartitionsAssigned(String bindingName, Consumer<?, ?> consumer,
+        Collection<TopicPartition> partitions, boolean initial) {
+
+        if (!readModel.isEnabled() || !BINDING_NAME.equals(bindingName)) {
+            return;
+        }
+
+        Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+        consumer.endOffsets(partitions).forEach((partition, endOffset) -> readModel.assigned(
+            partition.topic(), partition.partition(), beginningOffsets.get(partition), endOffset));
+    }
+}
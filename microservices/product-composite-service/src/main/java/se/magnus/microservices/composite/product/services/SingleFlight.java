@@ -0,0 +1,60 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+import se.magnus.util.http.RequestDeadline;
+
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaderCounter;
+    private final Counter coalescedCounter;
+
+    public SingleFlight(String operation, MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("composite.singleflight.calls")
+            .tag("operation", operation)
+            .tag("result", "leader")
+            .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("composite.singleflight.calls")
+            .tag("operation", operation)
+            .tag("result", "coalesced")
+            .register(meterRegistry);
+        Gauge.builder("composite.singleflight.in.flight", inFlight, Map::size)
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        // Looked up per subscription, i.e. a retry never gets the result of a completed call
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                // Only removes its own entry, a newer call for the same key may have replaced it
+                AtomicReference<Mono<V>> self = new AtomicReference<>();
+                Mono<V> flight = call.get()
+                    .doFinally(signal -> inFlight.remove(k, self.get()))
+                    // The shared call runs in the context of the leader, e.g. its trace, but
+                    // without its deadline. Each caller waits for it within its own deadline, the
+                    // call itself is cancelled once all callers have cancelled
+                    .contextWrite(RequestDeadline::withoutDeadline)
+                    .share();
+                self.set(flight);
+                return flight;
+            });
+
+            if (leader[0]) {
+                leaderCounter.increment();
+            } else {
+                coalescedCounter.increment();
+            }
+            return RequestDeadline.within(shared);
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package se.magnus.microservices.composite.product.services;
+
+import se.magnus.api.core.product.Product;
+
+// A last known good product served while the product service is unavailable, the marker stays
+// inside the composite and is reported in the aggregate as stale
+public class StaleProduct extends Product {
+
+    StaleProduct(Product product) {
+        super(product.getProductId(), product.getName(), product.getWeight(),
+            product.getServiceAddress());
+        setVersion(product.getVersion());
+    }
+}
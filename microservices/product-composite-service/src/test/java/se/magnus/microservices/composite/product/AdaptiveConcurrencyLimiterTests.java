@@ -0,0 +1,74 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.GET;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.AdaptiveConcurrencyLimiter;
+
+class AdaptiveConcurrencyLimiterTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(true, 2, 1, 10, 0.5, 2.0, 1000, meterRegistry);
+    private final ClientRequest request =
+        ClientRequest.create(GET, URI.create("http://product/product/1")).build();
+
+    @Test
+    void requestsOverTheLimitFailFast() {
+        Mono<ClientResponse> slow1 = limiter.filter(request, r -> respond(HttpStatus.OK, 500));
+        Mono<ClientResponse> slow2 = limiter.filter(request, r -> respond(HttpStatus.OK, 500));
+        Mono<ClientResponse> rejected = limiter.filter(request, r -> respond(HttpStatus.OK, 0));
+
+        StepVerifier.create(Mono.when(slow1, slow2).then(Mono.empty())
+                .or(Mono.delay(Duration.ofMillis(100)).then(rejected)))
+            .expectError(ServiceUnavailableException.class)
+            .verify();
+
+        assertThat(meterRegistry.get("composite.concurrency.rejected").tag("destination", "product")
+            .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void limitBacksOffOnOverload() {
+        StepVerifier.create(limiter.filter(request, r -> respond(HttpStatus.SERVICE_UNAVAILABLE, 0))
+                .flatMap(ClientResponse::releaseBody))
+            .verifyComplete();
+
+        assertThat(limiter.getLimit("product")).isEqualTo(1);
+        assertThat(meterRegistry.get("composite.concurrency.limit").tag("destination", "product")
+            .gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void permitIsHeldUntilTheBodyIsConsumed() {
+        ClientResponse first = limiter.filter(request, r -> respond(HttpStatus.OK, 0)).block();
+        ClientResponse second = limiter.filter(request, r -> respond(HttpStatus.OK, 0)).block();
+
+        StepVerifier.create(limiter.filter(request, r -> respond(HttpStatus.OK, 0)))
+            .expectError(ServiceUnavailableException.class)
+            .verify();
+
+        StepVerifier.create(first.bodyToMono(String.class)).expectNext("body").verifyComplete();
+        StepVerifier.create(second.releaseBody()).verifyComplete();
+
+        StepVerifier.create(limiter.filter(request, r -> respond(HttpStatus.OK, 0)))
+            .expectNextCount(1)
+            .verifyComplete();
+    }
+
+    private Mono<ClientResponse> respond(HttpStatus status, long delayMs) {
+        return Mono.just(ClientResponse.create(status).body("body").build())
+            .delayElement(Duration.ofMillis(delayMs));
+    }
+}
@@ -0,0 +1,139 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.api.event.Event.Type.DELETE;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.services.AggregateReadModel;
+import se.magnus.util.http.ServiceUtil;
+
+class AggregateReadModelTests {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void assemblesAggregateFromEventsInAnyOrder() {
+        AggregateReadModel readModel = createReadModel(true);
+
+        readModel.apply("reviews", new Event<>(CREATE, 1,
+            toMap(new Review(1, 1, "a", "s", "c", "rev"))));
+        readModel.apply("recommendations", Event.createBatch(1, List.of(
+            toMap(new Recommendation(1, 2, "a", 2, "c", "rec")),
+            toMap(new Recommendation(1, 1, "a", 1, "c", "rec")))));
+        readModel.apply("products", new Event<>(CREATE, 1, toMap(new Product(1, "n", 1, "pro"))));
+
+        ProductAggregate aggregate = readModel.get(1).block();
+        assertThat(aggregate.name()).isEqualTo("n");
+        assertThat(aggregate.recommendations()).hasSize(2);
+        assertThat(aggregate.recommendations().get(0).getRecommendationId()).isEqualTo(1);
+        assertThat(aggregate.reviews()).hasSize(1);
+        assertThat(aggregate.serviceAddresses().getPro()).isEqualTo("pro");
+        readModel.close();
+    }
+
+    @Test
+    void removesDeletedProducts() {
+        AggregateReadModel readModel = createReadModel(true);
+        readModel.apply("products", new Event<>(CREATE, 1, toMap(new Product(1, "n", 1, "pro"))));
+        readModel.apply("products", new Event<>(DELETE, 1, null));
+
+        assertThrows(NotFoundException.class, () -> readModel.get(1).block());
+        readModel.close();
+    }
+
+    @Test
+    void keepsModelOnDiskWithoutRebuild() {
+        AggregateReadModel readModel = createReadModel(true);
+        readModel.apply("products", new Event<>(CREATE, 1, toMap(new Product(1, "n", 1, "pro"))));
+        readModel.close();
+
+        AggregateReadModel reopened = createReadModel(false);
+        assertThat(reopened.get(1).block().name()).isEqualTo("n");
+        reopened.close();
+    }
+
+    @Test
+    void isNotCaughtUpUntilTheEndOffsetsAreReached() {
+        AggregateReadModel readModel = createReadModel(true);
+        readModel.assigned("products", 0, 0, 2);
+        readModel.assigned("recommendations", 0, 0, 0);
+        readModel.assigned("reviews", 0, 5, 5);
+        assertThat(readModel.isCaughtUp()).isFalse();
+        assertThat(readModel.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        Event<Integer, Map<String, Object>> replayed = new Event<>(CREATE, 1,
+            toMap(new Product(1, "n", 1, "pro")));
+        ReflectionTestUtils.setField(replayed, "eventCreatedAt", ZonedDateTime.now().minusHours(1));
+        readModel.apply("products", replayed);
+        readModel.consumed("products", 0, 0);
+        assertThat(readModel.isCaughtUp()).isFalse();
+        assertThat(readModel.getLagSeconds()).isGreaterThanOrEqualTo(3600);
+
+        readModel.apply("products", new Event<>(DELETE, 2, null));
+        readModel.consumed("products", 0, 1);
+        assertThat(readModel.isCaughtUp()).isTrue();
+        assertThat(readModel.getLagSeconds()).isLessThan(60);
+        assertThat(readModel.health().getStatus()).isEqualTo(Status.UP);
+        readModel.close();
+    }
+
+    @Test
+    void isNotCaughtUpWhileATopicIsStillReplaying() {
+        AggregateReadModel readModel = createReadModel(true);
+        readModel.assigned("products", 0, 0, 1);
+        readModel.assigned("recommendations", 0, 0, 1);
+        readModel.assigned("reviews", 0, 0, 3);
+
+        // A live event on one topic says nothing about the others
+        readModel.apply("products", new Event<>(DELETE, 1, null));
+        readModel.consumed("products", 0, 0);
+        readModel.apply("recommendations", new Event<>(DELETE, 1, null));
+        readModel.consumed("recommendations", 0, 0);
+        assertThat(readModel.isCaughtUp()).isFalse();
+
+        readModel.consumed("reviews", 0, 2);
+        assertThat(readModel.isCaughtUp()).isTrue();
+        readModel.close();
+    }
+
+    @Test
+    void staysOutOfServiceWithoutEvents() throws InterruptedException {
+        AggregateReadModel readModel = createReadModel(true);
+
+        Thread.sleep(100);
+
+        assertThat(readModel.isCaughtUp()).isFalse();
+        assertThat(readModel.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        readModel.close();
+    }
+
+    private Map<String, Object> toMap(Object entity) {
+        return mapper.convertValue(entity, Map.class);
+    }
+
+    private AggregateReadModel createReadModel(boolean rebuildOnStartup) {
+        return new AggregateReadModel(true, dir.resolve("read-model.mv"), rebuildOnStartup,
+            mapper, new ServiceUtil("7000"), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,52 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+class CachingReactiveJwtDecoderTests {
+
+    private final ReactiveJwtDecoder delegate = mock(ReactiveJwtDecoder.class);
+    private final CachingReactiveJwtDecoder decoder =
+        new CachingReactiveJwtDecoder(delegate, 100, new SimpleMeterRegistry());
+
+    @Test
+    void reusedTokenIsVerifiedOnce() {
+        Jwt jwt = createJwt("token", Instant.now().plusSeconds(60));
+        when(delegate.decode("token")).thenReturn(Mono.just(jwt));
+
+        assertThat(decoder.decode("token").block()).isSameAs(jwt);
+        assertThat(decoder.decode("token").block()).isSameAs(jwt);
+
+        verify(delegate, times(1)).decode("token");
+    }
+
+    @Test
+    void expiredTokenIsVerifiedAgain() {
+        Jwt jwt = createJwt("expired", Instant.now().minusSeconds(1));
+        when(delegate.decode("expired")).thenReturn(Mono.just(jwt));
+
+        decoder.decode("expired").block();
+        decoder.decode("expired").block();
+
+        verify(delegate, times(2)).decode("expired");
+    }
+
+    private Jwt createJwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+            .header("alg", "RS256")
+            .claim("scope", "product:read")
+            .issuedAt(expiresAt.minusSeconds(300))
+            .expiresAt(expiresAt)
+            .build();
+    }
+}
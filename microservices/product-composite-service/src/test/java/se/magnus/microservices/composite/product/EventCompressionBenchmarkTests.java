@@ -0,0 +1,100 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.magnus.api.event.Event.Type.CREATE_BATCH;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.util.messaging.GzipJsonMessageConverter;
+
+// Compares bytes on the wire and throughput of plain and gzip compressed events for typical
+// payload sizes, the numbers are logged, only the sizes and the round trip are asserted
+@Slf4j
+class EventCompressionBenchmarkTests {
+
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2_000;
+    private static final Type REVIEW_EVENT = new TypeReference<Event<Integer, Review>>() {
+    }.getType();
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final GzipJsonMessageConverter converter = new GzipJsonMessageConverter(mapper);
+
+    @Test
+    void comparePlainAndCompressedEvents() throws Exception {
+        for (int reviews : new int[] {1, 10, 100}) {
+            Event<Integer, Review> event = createEvent(reviews);
+            byte[] json = mapper.writeValueAsBytes(event);
+            byte[] compressed = GzipJsonMessageConverter.compress(json);
+
+            // Serialize on the producer side and deserialize on the consumer side
+            long plainNanos = measure(() -> mapper.readValue(mapper.writeValueAsBytes(event),
+                Event.class));
+            long compressedNanos = measure(() -> mapper.readValue(GzipJsonMessageConverter.decompress(
+                GzipJsonMessageConverter.compress(mapper.writeValueAsBytes(event))), Event.class));
+
+            log.info("{} reviews: {} bytes plain, {} bytes gzip, {} events/s plain, {} events/s gzip",
+                reviews, json.length, compressed.length, eventsPerSecond(plainNanos),
+                eventsPerSecond(compressedNanos));
+
+            if (reviews > 1) {
+                assertThat(compressed.length).isLessThan(json.length / 2);
+            }
+        }
+    }
+
+    @Test
+    void convertsCompressedEventToConsumerType() throws Exception {
+        byte[] json = mapper.writeValueAsBytes(createEvent(10));
+        Message<byte[]> message = MessageBuilder.withPayload(GzipJsonMessageConverter.compress(json))
+            .setHeader(MessageHeaders.CONTENT_TYPE, GzipJsonMessageConverter.CONTENT_TYPE)
+            .build();
+
+        @SuppressWarnings("unchecked")
+        Event<Integer, Review> event =
+            (Event<Integer, Review>) converter.fromMessage(message, Event.class, REVIEW_EVENT);
+
+        assertThat(event.getEventType()).isEqualTo(CREATE_BATCH);
+        assertThat(event.getItems()).hasSize(10);
+        assertThat(event.getItems().get(0)).isInstanceOf(Review.class);
+    }
+
+    private Event<Integer, Review> createEvent(int reviews) {
+        return Event.createBatch(1, IntStream.rangeClosed(1, reviews)
+            .mapToObj(i -> new Review(1, i, "Author " + i, "Subject " + i,
+                "Content of review " + i + ", " + "a longer text that describes the product. ".repeat(10),
+                null))
+            .toList());
+    }
+
+    private long measure(Codec codec) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            codec.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            codec.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long eventsPerSecond(long nanos) {
+        return ITERATIONS * 1_000_000_000L / Math.max(nanos, 1);
+    }
+
+    private interface Codec {
+        Object run() throws Exception;
+    }
+}
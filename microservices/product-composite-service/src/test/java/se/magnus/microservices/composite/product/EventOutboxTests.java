@@ -0,0 +1,101 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.api.event.Event.Type.DELETE;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.microservices.composite.product.services.EventOutbox;
+import se.magnus.microservices.composite.product.services.EventPublisher;
+
+class EventOutboxTests {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void relaysAppendedEvents() {
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(anyString(), any())).thenReturn(Mono.empty());
+
+        EventOutbox outbox = createOutbox(publisher);
+        outbox.append("products-out-0", new Event(CREATE, 1, new Product(1, "name", 1, null))).block();
+        outbox.startRelay();
+
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(publisher, timeout(5000)).publish(eq("products-out-0"), captor.capture());
+        assertThat(captor.getValue().getEventType()).isEqualTo(CREATE);
+        assertThat(captor.getValue().getKey()).isEqualTo(1);
+        outbox.stop();
+    }
+
+    @Test
+    void replaysEventsNotRelayedBeforeRestart() {
+        EventPublisher unavailable = mock(EventPublisher.class);
+        EventOutbox outbox = createOutbox(unavailable);
+        outbox.append("products-out-0", new Event(DELETE, 1, null)).block();
+        outbox.stop();
+        verify(unavailable, never()).publish(anyString(), any());
+
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(anyString(), any())).thenReturn(Mono.empty());
+        EventOutbox restarted = createOutbox(publisher);
+        restarted.startRelay();
+
+        verify(publisher, timeout(5000)).publish(eq("products-out-0"), any());
+        restarted.stop();
+    }
+
+    @Test
+    void skipsUnreadableRecordsAndKeepsRelaying() throws IOException {
+        EventOutbox outbox = createOutbox(mock(EventPublisher.class));
+        outbox.append("products-out-0", new Event(DELETE, 1, null)).block();
+        outbox.stop();
+
+        // Overwrites the start of the first record, right after the header and its length
+        try (RandomAccessFile journal = new RandomAccessFile(dir.resolve("outbox.journal").toFile(),
+            "rw")) {
+            journal.seek(16 + Integer.BYTES);
+            journal.write("xxxx".getBytes(StandardCharsets.UTF_8));
+        }
+
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(anyString(), any())).thenReturn(Mono.empty());
+        EventOutbox restarted = createOutbox(publisher);
+        restarted.append("products-out-0", new Event(DELETE, 2, null)).block();
+        restarted.startRelay();
+
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(publisher, timeout(5000)).publish(eq("products-out-0"), captor.capture());
+        assertThat(captor.getValue().getKey()).isEqualTo(2);
+        restarted.stop();
+    }
+
+    private EventOutbox createOutbox(EventPublisher publisher) {
+        return new EventOutbox(true, dir.resolve("outbox.journal"), 1024 * 1024, false,
+            Duration.ofMillis(10), 10, 4, publisher, mapper, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,204 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.event.Event.Type.DELETE;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.ServiceUnavailableException;
+import se.magnus.microservices.composite.product.services.EventPublisher;
+
+class EventPublisherTests {
+
+    private static final String CORRELATION_ID_HEADER = "eventCorrelationId";
+
+    private final StreamBridge streamBridge = mock(StreamBridge.class);
+    private final PublishSubscribeChannel kafkaAcks = new PublishSubscribeChannel();
+    private final PublishSubscribeChannel errorChannel = new PublishSubscribeChannel();
+    private final Scheduler publishEventScheduler =
+        Schedulers.newBoundedElastic(1, 1, "publish-pool");
+
+    @AfterEach
+    void disposeScheduler() {
+        publishEventScheduler.dispose();
+    }
+
+    @Test
+    void rabbitAckConfirmsEvent() {
+        EventPublisher publisher = createPublisher("rabbit", Duration.ofSeconds(5), 10);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            confirmRabbit(invocation.getArgument(1), true);
+            return true;
+        });
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .verifyComplete();
+    }
+
+    @Test
+    void rabbitNackFailsEvent() {
+        EventPublisher publisher = createPublisher("rabbit", Duration.ofSeconds(5), 10);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            confirmRabbit(invocation.getArgument(1), false);
+            return true;
+        });
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .verifyError(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void kafkaAckIsCorrelatedWithItsEvent() {
+        EventPublisher publisher = createPublisher("kafka", Duration.ofSeconds(5), 10);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            Message<?> sent = invocation.getArgument(1);
+            // An ack for another event must not confirm this one
+            kafkaAcks.send(MessageBuilder.withPayload("other")
+                .setHeader(CORRELATION_ID_HEADER, "another-id").build());
+            kafkaAcks.send(MessageBuilder.withPayload("ack").copyHeaders(sent.getHeaders()).build());
+            return true;
+        });
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .verifyComplete();
+    }
+
+    @Test
+    void kafkaSendFailureFailsEventWithoutWaitingForTimeout() {
+        EventPublisher publisher = createPublisher("kafka", Duration.ofSeconds(30), 10);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            errorChannel.send(new ErrorMessage(
+                new MessagingException((Message<?>) invocation.getArgument(1), "send failed")));
+            return true;
+        });
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void rejectsEventsAboveMaxUnconfirmed() {
+        EventPublisher publisher = createPublisher("kafka", Duration.ofSeconds(30), 1);
+        when(streamBridge.send(anyString(), any(Message.class))).thenReturn(true);
+
+        Mono<Void> unconfirmed = publisher.publish("products-out-0", new Event<>(DELETE, 1, null));
+        StepVerifier.create(unconfirmed)
+            .expectSubscription()
+            .then(() -> StepVerifier.create(
+                    publisher.publish("products-out-0", new Event<>(DELETE, 2, null)))
+                .verifyError(ServiceUnavailableException.class))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void missingConfirmTimesOut() {
+        EventPublisher publisher = createPublisher("rabbit", Duration.ofMillis(100), 10);
+        when(streamBridge.send(anyString(), any(Message.class))).thenReturn(true);
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void blockingBinderDoesNotRunOnTheSubscribingThread() {
+        EventPublisher publisher = createPublisher("rabbit", Duration.ofSeconds(5), 10);
+        AtomicReference<Thread> sendingThread = new AtomicReference<>();
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            sendingThread.set(Thread.currentThread());
+            confirmRabbit(invocation.getArgument(1), true);
+            return true;
+        });
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 1, null)))
+            .verifyComplete();
+
+        assertThat(sendingThread.get()).isNotSameAs(Thread.currentThread());
+        assertThat(sendingThread.get().getName()).startsWith("publish-pool");
+    }
+
+    @Test
+    void rejectsEventsWhenThePublishPoolIsFull() throws InterruptedException {
+        EventPublisher publisher = createPublisher("rabbit", Duration.ofSeconds(5), 10);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            blocked.await();
+            return true;
+        });
+
+        // One event blocks the only thread, the next one waits in the queue
+        Disposable first = publisher.publish("products-out-0", new Event<>(DELETE, 1, null))
+            .subscribe();
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        Disposable second = publisher.publish("products-out-0", new Event<>(DELETE, 2, null))
+            .subscribe();
+
+        StepVerifier.create(publisher.publish("products-out-0", new Event<>(DELETE, 3, null)))
+            .verifyError(ServiceUnavailableException.class);
+
+        blocked.countDown();
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    void smallEventIsSentAsSerializedJson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        EventPublisher publisher = new EventPublisher(streamBridge, new SimpleMeterRegistry(),
+            publishEventScheduler, kafkaAcks, errorChannel, false, "rabbit", Duration.ofSeconds(5), 10, mapper, true, 8192);
+        Event<Integer, Object> event = new Event<>(DELETE, 1, null);
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        when(streamBridge.send(anyString(), sent.capture())).thenReturn(true);
+
+        StepVerifier.create(publisher.publish("products-out-0", event)).verifyComplete();
+
+        assertThat(sent.getValue().getPayload()).isEqualTo(mapper.writeValueAsBytes(event));
+        assertThat(sent.getValue().getHeaders().get(MessageHeaders.CONTENT_TYPE))
+            .isEqualTo("application/json");
+    }
+
+    private void confirmRabbit(Message<?> sent, boolean ack) {
+        CorrelationData correlationData = (CorrelationData) sent.getHeaders()
+            .get(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION);
+        correlationData.getFuture().complete(
+            new CorrelationData.Confirm(ack, ack ? null : "rejected"));
+    }
+
+    private EventPublisher createPublisher(String binder, Duration confirmTimeout,
+        int maxUnconfirmed) {
+        return new EventPublisher(streamBridge, new SimpleMeterRegistry(), publishEventScheduler,
+            kafkaAcks, errorChannel, true, binder, confirmTimeout, maxUnconfirmed, new ObjectMapper().registerModule(
+            new JavaTimeModule()), false, 8192);
+    }
+}
@@ -0,0 +1,37 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import se.magnus.api.core.product.Product;
+import se.magnus.microservices.composite.product.services.LastKnownGoodProductStore;
+import se.magnus.microservices.composite.product.services.StaleProduct;
+
+class LastKnownGoodProductStoreTests {
+
+    private final LastKnownGoodProductStore store =
+        new LastKnownGoodProductStore(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Test
+    void servesStoredProductAsStale() {
+        Product product = new Product(1, "name", 1, "address");
+        store.put(product);
+
+        Product stale = store.getStale(1).orElseThrow();
+
+        assertThat(stale.getName()).isEqualTo("name");
+        assertThat(stale).isInstanceOf(StaleProduct.class);
+        assertThat(product).isNotInstanceOf(StaleProduct.class);
+    }
+
+    @Test
+    void unknownAndInvalidatedProductsAreNotServed() {
+        store.put(new Product(1, "name", 1, "address"));
+        store.invalidate(1);
+
+        assertThat(store.getStale(1)).isEmpty();
+        assertThat(store.getStale(2)).isEmpty();
+    }
+}
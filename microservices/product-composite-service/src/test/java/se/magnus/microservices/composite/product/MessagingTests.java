@@ -56,7 +56,7 @@ public class MessagingTests {
 
     @Test
     void createCompositeProduct1() {
-        ProductAggregate composite = new ProductAggregate(1, "name", 1, null, null, null);
+        ProductAggregate composite = new ProductAggregate(1, "name", 1, null, null, null, false, null, 0);
         postAndVerifyProduct(composite, ACCEPTED);
 
         final List<String> productMessages = getMessages("products");
@@ -79,7 +79,7 @@ public class MessagingTests {
     void createCompositeProduct2() {
         ProductAggregate composite = new ProductAggregate(1, "name", 1,
             List.of(new RecommendationSummary(1, "a", 1, "c")),
-            List.of(new ReviewSummary(1, "a", "s", "c")), null);
+            List.of(new ReviewSummary(1, "a", "s", "c")), null, false, null, 0);
         postAndVerifyProduct(composite, ACCEPTED);
 
         final List<String> productMessages = getMessages("products");
@@ -115,6 +115,43 @@ public class MessagingTests {
             is(sameEventExceptCreatedAt(expectedReviewEvent)));
     }
 
+    @Test
+    void createCompositeProductWithManyRecommendationsAndReviews() {
+        ProductAggregate composite = new ProductAggregate(1, "name", 1,
+            List.of(new RecommendationSummary(1, "a", 1, "c"),
+                new RecommendationSummary(2, "a", 2, "c")),
+            List.of(new ReviewSummary(1, "a", "s", "c"), new ReviewSummary(2, "a", "s", "c"),
+                new ReviewSummary(3, "a", "s", "c")), null, false, null, 0);
+        postAndVerifyProduct(composite, ACCEPTED);
+
+        final List<String> productMessages = getMessages("products");
+        final List<String> recommendationMessages = getMessages("recommendations");
+        final List<String> reviewMessages = getMessages("reviews");
+
+        assertThat(productMessages.size()).isEqualTo(1);
+
+        // One batch event per entity type
+        assertThat(recommendationMessages.size()).isEqualTo(1);
+
+        Event<Integer, Recommendation> expectedRecommendationEvent = Event.createBatch(
+            composite.productId(), composite.recommendations().stream()
+                .map(r -> new Recommendation(composite.productId(), r.getRecommendationId(),
+                    r.getAuthor(), r.getRate(), r.getContent(), null))
+                .toList());
+        org.hamcrest.MatcherAssert.assertThat(recommendationMessages.get(0),
+            is(sameEventExceptCreatedAt(expectedRecommendationEvent)));
+
+        assertThat(reviewMessages.size()).isEqualTo(1);
+
+        Event<Integer, Review> expectedReviewEvent = Event.createBatch(composite.productId(),
+            composite.reviews().stream()
+                .map(r -> new Review(composite.productId(), r.getReviewId(), r.getAuthor(),
+                    r.getSubject(), r.getContent(), null))
+                .toList());
+        org.hamcrest.MatcherAssert.assertThat(reviewMessages.get(0),
+            is(sameEventExceptCreatedAt(expectedReviewEvent)));
+    }
+
     @Test
     void deleteCompositeProduct() {
         deleteAndVerifyProduct(1, ACCEPTED);
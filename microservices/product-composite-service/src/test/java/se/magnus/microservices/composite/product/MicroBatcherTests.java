@@ -0,0 +1,147 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import se.magnus.api.exceptions.DeadlineExceededException;
+import se.magnus.microservices.composite.product.services.MicroBatcher;
+import se.magnus.util.http.RequestDeadline;
+
+class MicroBatcherTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void callsWithinWindowShareOneLoad() {
+        MicroBatcher<Integer, String> batcher = createBatcher(Duration.ofMillis(50), 10);
+
+        StepVerifier.create(Mono.zip(batcher.load(1), batcher.load(2), batcher.load(1)))
+            .expectNextMatches(t -> t.getT1().equals(List.of("1-a", "1-b"))
+                && t.getT2().equals(List.of("2-a", "2-b"))
+                && t.getT3().equals(List.of("1-a", "1-b")))
+            .verifyComplete();
+
+        assertThat(batches).containsExactly(List.of(1, 2));
+        assertThat(meterRegistry.get("composite.batch.size").summary().max()).isEqualTo(2);
+    }
+
+    @Test
+    void fullBatchIsLoadedBeforeWindowEnds() {
+        MicroBatcher<Integer, String> batcher = createBatcher(Duration.ofSeconds(10), 2);
+
+        StepVerifier.create(Mono.zip(batcher.load(1), batcher.load(2)))
+            .expectNextCount(1)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+
+        assertThat(batches).containsExactly(List.of(1, 2));
+    }
+
+    @Test
+    void keysWithoutResultGetEmptyList() {
+        MicroBatcher<Integer, String> batcher = createBatcher(Duration.ofMillis(10), 10);
+
+        StepVerifier.create(batcher.load(1000))
+            .expectNext(List.of())
+            .verifyComplete();
+    }
+
+    @Test
+    void invalidKeyDoesNotFailOtherCallersInWindow() {
+        MicroBatcher<Integer, String> batcher = createBatcher(Duration.ofMillis(50), 10);
+
+        StepVerifier.create(batcher.load(-1))
+            .expectError(IllegalArgumentException.class)
+            .verify(Duration.ofSeconds(5));
+        StepVerifier.create(Mono.zip(batcher.load(1), batcher.load(2)))
+            .expectNextCount(1)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+
+        assertThat(batches).containsExactly(List.of(-1), List.of(1, 2));
+    }
+
+    @Test
+    void loadRunsInContextOfCaller() {
+        List<String> contexts = new CopyOnWriteArrayList<>();
+        MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofMillis(10),
+            10, id -> true, ids -> Flux.deferContextual(context -> {
+                contexts.add(context.get("caller"));
+                return Flux.fromIterable(ids).map(id -> id + "-a");
+            }), value -> Integer.valueOf(value.substring(0, value.indexOf('-'))), meterRegistry);
+
+        StepVerifier.create(batcher.load(1).contextWrite(Context.of("caller", "first")))
+            .expectNext(List.of("1-a"))
+            .verifyComplete();
+
+        assertThat(contexts).containsExactly("first");
+    }
+
+    @Test
+    void shortDeadlineOfOneWaiterDoesNotFailTheOthers() {
+        List<Long> loadDeadlines = new CopyOnWriteArrayList<>();
+        MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofMillis(10),
+            10, id -> true, ids -> Flux.deferContextual(context -> {
+                loadDeadlines.add(RequestDeadline.getDeadline(context).orElse(null));
+                return Flux.fromIterable(ids).map(id -> id + "-a")
+                    .delaySubscription(Duration.ofMillis(200));
+            }), value -> Integer.valueOf(value.substring(0, value.indexOf('-'))), meterRegistry);
+        long shortDeadline = System.currentTimeMillis() + 50;
+        long longDeadline = System.currentTimeMillis() + 5000;
+
+        Mono<Object> shortWaiter = batcher.load(1)
+            .contextWrite(context -> RequestDeadline.withDeadline(context, shortDeadline))
+            .<Object>map(result -> result)
+            .onErrorResume(DeadlineExceededException.class, ex -> Mono.just("exceeded"));
+        Mono<List<String>> longWaiter = batcher.load(2)
+            .contextWrite(context -> RequestDeadline.withDeadline(context, longDeadline));
+
+        StepVerifier.create(Mono.zip(shortWaiter, longWaiter))
+            .expectNextMatches(t -> t.getT1().equals("exceeded")
+                && t.getT2().equals(List.of("2-a")))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+
+        assertThat(loadDeadlines).containsExactly(longDeadline);
+    }
+
+    @Test
+    void loadIsCancelledWhenAllWaitersHaveCancelled() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", Duration.ofMillis(10),
+            10, id -> true, ids -> Flux.<String>never().doOnCancel(() -> cancelled.set(true)),
+            Integer::valueOf, meterRegistry);
+
+        StepVerifier.create(Mono.zip(batcher.load(1), batcher.load(2)))
+            .expectSubscription()
+            .thenAwait(Duration.ofMillis(100))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+
+        assertThat(cancelled).isTrue();
+    }
+
+    // Like the core services, the loader rejects the whole call if one of the ids is invalid
+    private MicroBatcher<Integer, String> createBatcher(Duration window, int maxBatchSize) {
+        return new MicroBatcher<>("test", window, maxBatchSize, id -> id > 0, ids -> {
+            batches.add(ids);
+            if (ids.stream().anyMatch(id -> id < 1)) {
+                return Flux.error(new IllegalArgumentException("Invalid id in " + ids));
+            }
+            return Flux.fromIterable(ids)
+                .filter(id -> id < 1000)
+                .flatMapIterable(id -> List.of(id + "-a", id + "-b"));
+        }, value -> Integer.valueOf(value.substring(0, value.indexOf('-'))), meterRegistry);
+    }
+}
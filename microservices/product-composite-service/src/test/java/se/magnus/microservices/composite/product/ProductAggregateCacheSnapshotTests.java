@@ -0,0 +1,84 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
+import se.magnus.microservices.composite.product.services.ProductAggregateCacheSnapshot;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+
+class ProductAggregateCacheSnapshotTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ProductCompositeIntegration integration = mock(ProductCompositeIntegration.class);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void warmsCacheOfNextInstanceAndRemovesOutdatedAggregates() {
+        ProductAggregateCache cache = createCache();
+        cache.put(createAggregate(1, 0));
+        cache.put(createAggregate(2, 0));
+        cache.put(createAggregate(3, 0));
+        createSnapshot(cache).save();
+        assertThat(Files.exists(dir.resolve("cache.json"))).isTrue();
+
+        // While no instance was running product 2 has been updated, and the recommendation of
+        // product 3 has been deleted and recreated, i.e. with the same version
+        Product product1 = new Product(1, "name", 1, null);
+        Product product2 = new Product(2, "name", 1, null);
+        product2.setVersion(1);
+        Product product3 = new Product(3, "name", 1, null);
+        when(integration.getProducts(anyList()))
+            .thenReturn(Flux.just(product1, product2, product3));
+        when(integration.getRecommendations(anyList())).thenReturn(Flux.just(
+            new Recommendation(1, 1, "a", 1, "c", null), new Recommendation(2, 1, "a", 1, "c", null),
+            new Recommendation(3, 1, "a", 5, "recreated", null)));
+        when(integration.getReviews(anyList())).thenReturn(Flux.empty());
+
+        ProductAggregateCache restarted = createCache();
+        ProductAggregateCacheSnapshot snapshot = createSnapshot(restarted);
+        snapshot.load();
+        assertThat(restarted.get(1).block()).isNotNull();
+        assertThat(restarted.get(2).block()).isNotNull();
+        assertThat(Files.exists(dir.resolve("cache.json"))).isFalse();
+
+        snapshot.revalidate();
+        assertThat(restarted.get(1).blockOptional(Duration.ofSeconds(1))).isPresent();
+        assertThat(restarted.get(2).blockOptional(Duration.ofSeconds(1))).isEmpty();
+        assertThat(restarted.get(3).blockOptional(Duration.ofSeconds(1))).isEmpty();
+    }
+
+    private ProductAggregate createAggregate(int productId, int version) {
+        return new ProductAggregate(productId, "name", 1,
+            List.of(new RecommendationSummary(1, "a", 1, "c", 0)), List.of(),
+            new ServiceAddresses(), false, List.of(), version);
+    }
+
+    private ProductAggregateCache createCache() {
+        return new ProductAggregateCache(true, 100, Duration.ofMinutes(1), Duration.ofSeconds(1),
+            new SimpleMeterRegistry());
+    }
+
+    private ProductAggregateCacheSnapshot createSnapshot(ProductAggregateCache cache) {
+        return new ProductAggregateCacheSnapshot(true, dir.resolve("cache.json"), 10, 50, cache,
+            integration, mapper, new SimpleMeterRegistry());
+    }
+}
@@ -1,12 +1,17 @@
 package se.magnus.microservices.composite.product;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +21,14 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.composite.product.ProductAggregate;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.services.ProductAggregateCache;
 import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
@@ -31,10 +39,15 @@ class ProductCompositeServiceApplicationTests {
     private static final int PRODUCT_ID_OK = 1;
     private static final int PRODUCT_ID_NOT_FOUND = 2;
     private static final int PRODUCT_ID_INVALID = 3;
+    private static final int PRODUCT_ID_CACHED = 4;
+    private static final int PRODUCT_ID_DEGRADED = 5;
 
     @Autowired
     private WebTestClient client;
 
+    @Autowired
+    private ProductAggregateCache productAggregateCache;
+
     @MockitoBean
     private ProductCompositeIntegration compositeIntegration;
 
@@ -52,6 +65,27 @@ class ProductCompositeServiceApplicationTests {
             new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
         when(compositeIntegration.getProduct(PRODUCT_ID_INVALID, 0, 0)).thenThrow(
             new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
+        when(compositeIntegration.getProduct(PRODUCT_ID_CACHED, 0, 0)).thenReturn(
+            Mono.just(new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+        when(compositeIntegration.getRecommendations(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+        when(compositeIntegration.getReviews(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+        when(compositeIntegration.getProduct(PRODUCT_ID_DEGRADED, 0, 0)).thenReturn(
+            Mono.just(new Product(PRODUCT_ID_DEGRADED, "name", 1, "mock-address")));
+        when(compositeIntegration.getRecommendations(PRODUCT_ID_DEGRADED)).thenReturn(
+            Flux.fromIterable(List.of(
+                new Recommendation(PRODUCT_ID_DEGRADED, 1, "author", 1, "content", "mock address"))));
+        when(compositeIntegration.getReviews(PRODUCT_ID_DEGRADED)).thenReturn(
+            Flux.error(new TimeoutException("review timed out")));
+        when(compositeIntegration.getProductPage(0, 2)).thenReturn(Flux.just(
+            new Product(PRODUCT_ID_OK, "name", 1, "mock-address"),
+            new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+        when(compositeIntegration.getRecommendations(List.of(PRODUCT_ID_OK, PRODUCT_ID_CACHED)))
+            .thenReturn(Flux.just(
+                new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address"),
+                new Recommendation(PRODUCT_ID_OK, 2, "author", 1, "content", "mock address")));
+        when(compositeIntegration.getReviews(List.of(PRODUCT_ID_OK, PRODUCT_ID_CACHED)))
+            .thenReturn(Flux.just(
+                new Review(PRODUCT_ID_CACHED, 1, "author", "subject", "content", "mock address")));
     }
 
     @Test
@@ -65,6 +99,25 @@ class ProductCompositeServiceApplicationTests {
             .isEqualTo(1);
     }
 
+    @Test
+    void getProductNotModified() {
+        String etag = client.get().uri("/product-composite/" + PRODUCT_ID_OK)
+            .accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectHeader().exists("ETag")
+            .returnResult(ProductAggregate.class).getResponseHeaders().getETag();
+
+        client.get().uri("/product-composite/" + PRODUCT_ID_OK).accept(APPLICATION_JSON)
+            .header("If-None-Match", etag).exchange()
+            .expectStatus().isEqualTo(NOT_MODIFIED)
+            .expectHeader().valueEquals("ETag", etag)
+            .expectBody().isEmpty();
+
+        client.get().uri("/product-composite/" + PRODUCT_ID_OK).accept(APPLICATION_JSON)
+            .header("If-None-Match", "W/\"other\"").exchange()
+            .expectStatus().isEqualTo(OK);
+    }
+
     @Test
     void getProductNotFound() {
         getAndVerifyProduct(PRODUCT_ID_NOT_FOUND, NOT_FOUND).jsonPath("$.path")
@@ -79,6 +132,92 @@ class ProductCompositeServiceApplicationTests {
             .isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
     }
 
+    @Test
+    void getProductFromCache() {
+        productAggregateCache.invalidate(PRODUCT_ID_CACHED);
+
+        getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId")
+            .isEqualTo(PRODUCT_ID_CACHED);
+        getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId")
+            .isEqualTo(PRODUCT_ID_CACHED);
+        verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_CACHED, 0, 0);
+
+        client.get().uri("/product-composite/" + PRODUCT_ID_CACHED).accept(APPLICATION_JSON)
+            .header("Cache-Control", "no-cache").exchange().expectStatus().isEqualTo(OK);
+        verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_CACHED, 0, 0);
+
+        productAggregateCache.invalidate(PRODUCT_ID_CACHED);
+        getAndVerifyProduct(PRODUCT_ID_CACHED, OK);
+        verify(compositeIntegration, times(3)).getProduct(PRODUCT_ID_CACHED, 0, 0);
+    }
+
+    @Test
+    void getProductWithDegradedSection() {
+        getAndVerifyProduct(PRODUCT_ID_DEGRADED, OK)
+            .jsonPath("$.productId").isEqualTo(PRODUCT_ID_DEGRADED)
+            .jsonPath("$.recommendations.length()").isEqualTo(1)
+            .jsonPath("$.reviews.length()").isEqualTo(0)
+            .jsonPath("$.degradedSections.length()").isEqualTo(1)
+            .jsonPath("$.degradedSections[0]").isEqualTo("reviews");
+
+        // Degraded aggregates are not cached
+        getAndVerifyProduct(PRODUCT_ID_DEGRADED, OK);
+        verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_DEGRADED, 0, 0);
+    }
+
+    @Test
+    void getProductsByIds() {
+        client.get()
+            .uri("/product-composite?ids=" + PRODUCT_ID_OK + "," + PRODUCT_ID_NOT_FOUND + ","
+                + PRODUCT_ID_INVALID)
+            .accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(3)
+            .jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_OK)
+            .jsonPath("$[0].status").isEqualTo(OK.value())
+            .jsonPath("$[0].product.reviews.length()").isEqualTo(1)
+            .jsonPath("$[1].productId").isEqualTo(PRODUCT_ID_NOT_FOUND)
+            .jsonPath("$[1].status").isEqualTo(NOT_FOUND.value())
+            .jsonPath("$[1].message").isEqualTo("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)
+            .jsonPath("$[2].productId").isEqualTo(PRODUCT_ID_INVALID)
+            .jsonPath("$[2].status").isEqualTo(UNPROCESSABLE_ENTITY.value());
+    }
+
+    @Test
+    void getProductPage() {
+        client.get().uri("/product-composite?page=0&size=2").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(2)
+            .jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_OK)
+            .jsonPath("$[0].recommendations.length()").isEqualTo(2)
+            .jsonPath("$[0].reviews.length()").isEqualTo(0)
+            .jsonPath("$[1].productId").isEqualTo(PRODUCT_ID_CACHED)
+            .jsonPath("$[1].recommendations.length()").isEqualTo(0)
+            .jsonPath("$[1].reviews.length()").isEqualTo(1);
+
+        // One call per core service for the whole page
+        verify(compositeIntegration, times(1)).getProductPage(0, 2);
+        verify(compositeIntegration, times(0)).getRecommendations(PRODUCT_ID_OK);
+        verify(compositeIntegration, times(0)).getReviews(PRODUCT_ID_CACHED);
+    }
+
+    @Test
+    void getProductStream() {
+        Flux<ProductAggregate> stream = client.get()
+            .uri("/product-composite/stream?fromProductId=" + PRODUCT_ID_OK + "&toProductId="
+                + PRODUCT_ID_NOT_FOUND)
+            .accept(APPLICATION_NDJSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectHeader().contentType(APPLICATION_NDJSON)
+            .returnResult(ProductAggregate.class).getResponseBody();
+
+        StepVerifier.create(stream)
+            .expectNextMatches(aggregate -> aggregate.productId() == PRODUCT_ID_OK)
+            .verifyComplete();
+    }
+
     private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId,
         HttpStatus expectedStatus) {
         return client.get().uri("/product-composite/" + productId).accept(APPLICATION_JSON)
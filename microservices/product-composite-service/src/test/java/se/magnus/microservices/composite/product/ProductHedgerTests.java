@@ -0,0 +1,118 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.microservices.composite.product.services.ProductHedger;
+
+class ProductHedgerTests {
+
+    private static final Duration P95 = Duration.ofMillis(100);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void doesNotHedgeBeforeMinSamples() {
+        ProductHedger hedger = createHedger(0.1);
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(slowPrimary(new AtomicInteger())))
+            .thenAwait(Duration.ofSeconds(1))
+            .expectNext("primary")
+            .verifyComplete();
+
+        assertThat(count("composite.hedge.sent")).isZero();
+    }
+
+    @Test
+    void hedgesAfterPercentileDelay() {
+        ProductHedger hedger = createHedger(0.1);
+        warmUp();
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(slowPrimary(calls)))
+            .expectSubscription()
+            .thenAwait(Duration.ofMillis(50))
+            .then(() -> assertThat(calls).hasValue(1))
+            .thenAwait(Duration.ofMillis(100))
+            .expectNext("hedge")
+            .verifyComplete();
+
+        assertThat(count("composite.hedge.sent")).isEqualTo(1);
+        assertThat(count("composite.hedge.won")).isEqualTo(1);
+        // The cancelled primary call is recorded with the time it took until it was cancelled
+        assertThat(latency().count()).isEqualTo(101);
+    }
+
+    @Test
+    void hedgesAreCappedByTokens() {
+        ProductHedger hedger = createHedger(0);
+        warmUp();
+
+        // The bucket starts with 10 tokens and no request earns a new one
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.withVirtualTime(() -> hedger.hedge(slowPrimary(new AtomicInteger())))
+                .thenAwait(Duration.ofMillis(200))
+                .expectNext("hedge")
+                .verifyComplete();
+        }
+        StepVerifier.withVirtualTime(() -> hedger.hedge(slowPrimary(new AtomicInteger())))
+            .thenAwait(Duration.ofSeconds(1))
+            .expectNext("primary")
+            .verifyComplete();
+
+        assertThat(count("composite.hedge.sent")).isEqualTo(10);
+        assertThat(count("composite.hedge.throttled")).isEqualTo(1);
+    }
+
+    @Test
+    void failingHedgeDoesNotWin() {
+        ProductHedger hedger = createHedger(0.1);
+        warmUp();
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Mono<String>> failingHedge = () -> calls.incrementAndGet() == 1
+            ? Mono.delay(Duration.ofSeconds(1)).thenReturn("primary")
+            : Mono.error(new IllegalStateException("Connection refused"));
+
+        StepVerifier.withVirtualTime(() -> hedger.hedge(failingHedge))
+            .thenAwait(Duration.ofSeconds(1))
+            .expectNext("primary")
+            .verifyComplete();
+
+        assertThat(calls).hasValue(2);
+        assertThat(count("composite.hedge.won")).isZero();
+    }
+
+    // The first call takes a second, the hedged call answers right away
+    private Supplier<Mono<String>> slowPrimary(AtomicInteger calls) {
+        return () -> calls.incrementAndGet() == 1
+            ? Mono.delay(Duration.ofSeconds(1)).thenReturn("primary")
+            : Mono.just("hedge");
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 100; i++) {
+            latency().record(P95);
+        }
+    }
+
+    private Timer latency() {
+        return meterRegistry.get("composite.hedge.latency").timer();
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private ProductHedger createHedger(double maxHedgeRatio) {
+        return new ProductHedger(true, 0.95, Duration.ofMillis(20), 100, maxHedgeRatio,
+            meterRegistry);
+    }
+}
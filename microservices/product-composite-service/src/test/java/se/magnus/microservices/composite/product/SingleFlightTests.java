@@ -0,0 +1,73 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.magnus.api.exceptions.DeadlineExceededException;
+import se.magnus.microservices.composite.product.services.SingleFlight;
+import se.magnus.util.http.RequestDeadline;
+
+class SingleFlightTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<Integer, String> singleFlight =
+        new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentCallsShareOneExecution() {
+        AtomicInteger executions = new AtomicInteger();
+
+        Mono<String> call1 = singleFlight.execute(1, () -> slowCall(executions));
+        Mono<String> call2 = singleFlight.execute(1, () -> slowCall(executions));
+
+        StepVerifier.create(Mono.zip(call1, call2))
+            .expectNextMatches(t -> t.getT1().equals("value") && t.getT2().equals("value"))
+            .verifyComplete();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("composite.singleflight.calls").tag("result", "coalesced")
+            .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completedCallsAreNotReused() {
+        AtomicInteger executions = new AtomicInteger();
+
+        StepVerifier.create(singleFlight.execute(1, () -> slowCall(executions)))
+            .expectNext("value").verifyComplete();
+        StepVerifier.create(singleFlight.execute(1, () -> slowCall(executions)))
+            .expectNext("value").verifyComplete();
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void callersWaitWithinTheirOwnDeadline() {
+        AtomicInteger executions = new AtomicInteger();
+
+        Mono<String> leader = singleFlight.execute(1, () -> slowCall(executions))
+            .contextWrite(context -> RequestDeadline.withDeadline(context,
+                System.currentTimeMillis() + 20));
+        Mono<String> follower = singleFlight.execute(1, () -> slowCall(executions));
+
+        StepVerifier.create(Mono.zip(leader.onErrorReturn(DeadlineExceededException.class,
+                "exceeded"), follower))
+            .expectNextMatches(t -> t.getT1().equals("exceeded") && t.getT2().equals("value"))
+            .verifyComplete();
+
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private Mono<String> slowCall(AtomicInteger executions) {
+        return Mono.fromCallable(() -> {
+            executions.incrementAndGet();
+            return "value";
+        }).delayElement(Duration.ofMillis(100));
+    }
+}
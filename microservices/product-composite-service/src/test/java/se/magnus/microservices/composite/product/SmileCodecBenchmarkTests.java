@@ -0,0 +1,59 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.List;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import se.magnus.api.core.review.Review;
+
+// Compares the payload size and decode time of the responses of the core services in JSON and
+// Smile, the numbers are logged, only the payload size is asserted
+@Slf4j
+class SmileCodecBenchmarkTests {
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 5_000;
+    private static final TypeReference<List<Review>> REVIEWS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    private final List<Review> reviews = IntStream.rangeClosed(1, 20)
+        .mapToObj(i -> new Review(1, i, "Author " + i, "Subject " + i,
+            "Content of review " + i + ", a few more words to make it a realistic review",
+            "review-7d9f8c6b5-x2x7z/10.1.0.17:80"))
+        .toList();
+
+    @Test
+    void compareJsonAndSmile() throws Exception {
+        byte[] json = jsonMapper.writeValueAsBytes(reviews);
+        byte[] smile = smileMapper.writeValueAsBytes(reviews);
+
+        long jsonNanos = measureDecode(jsonMapper, json);
+        long smileNanos = measureDecode(smileMapper, smile);
+
+        log.info("JSON:  {} bytes, {} ns per decode", json.length, jsonNanos / ITERATIONS);
+        log.info("Smile: {} bytes, {} ns per decode", smile.length, smileNanos / ITERATIONS);
+
+        assertThat(smile.length).isLessThan(json.length);
+        assertThat(smileMapper.readValue(smile, REVIEWS)).hasSize(reviews.size());
+    }
+
+    private long measureDecode(ObjectMapper mapper, byte[] payload) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            mapper.readValue(payload, REVIEWS);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.readValue(payload, REVIEWS);
+        }
+        return System.nanoTime() - start;
+    }
+}
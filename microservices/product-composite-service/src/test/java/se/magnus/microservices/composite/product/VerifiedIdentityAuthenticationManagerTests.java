@@ -0,0 +1,67 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import reactor.test.StepVerifier;
+
+class VerifiedIdentityAuthenticationManagerTests {
+
+    private static final String SECRET = "a-secret-of-at-least-32-characters!";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final VerifiedIdentityAuthenticationManager manager =
+        new VerifiedIdentityAuthenticationManager(SECRET, mapper);
+
+    @Test
+    void rejectsTamperedAndExpiredIdentities() throws Exception {
+        String valid = createCredential(Map.of("sub", "reader", "aud", List.of("composite"),
+            "vexp", Instant.now().plusSeconds(30).getEpochSecond()));
+        String expired = createCredential(Map.of("sub", "reader",
+            "vexp", Instant.now().minusSeconds(1).getEpochSecond()));
+        String tampered = createCredential(Map.of("sub", "admin",
+            "vexp", Instant.now().plusSeconds(30).getEpochSecond())).split("\\.")[0]
+            + "." + valid.split("\\.")[1];
+
+        assertThat(manager.verify(valid).getAudience()).containsExactly("composite");
+        assertThatThrownBy(() -> manager.verify(expired)).isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> manager.verify(tampered)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void rejectsIdentityWithoutClaims() throws Exception {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("sub", null);
+        claims.put("vexp", Instant.now().plusSeconds(30).getEpochSecond());
+        String credential = createCredential(claims);
+
+        assertThatThrownBy(() -> manager.verify(credential))
+            .isInstanceOf(BadCredentialsException.class);
+        StepVerifier.create(manager.authenticate(
+                new PreAuthenticatedAuthenticationToken(credential, credential)))
+            .expectError(BadCredentialsException.class)
+            .verify();
+    }
+
+    // Same format as the VerifiedIdentityFilter of the gateway
+    private String createCredential(Map<String, Object> claims) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String payload = encoder.encodeToString(mapper.writeValueAsBytes(claims));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return payload + "." + encoder.encodeToString(
+            mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
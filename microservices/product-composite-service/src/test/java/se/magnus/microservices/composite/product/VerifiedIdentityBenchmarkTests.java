@@ -0,0 +1,92 @@
+package se.magnus.microservices.composite.product;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+// Compares the per request CPU of verifying the RSA signature of a JWT and of verifying the HMAC
+// signed identity from the gateway, the numbers are logged, only the verified claims are asserted
+@Slf4j
+class VerifiedIdentityBenchmarkTests {
+
+    private static final String SECRET = "a-secret-of-at-least-32-characters!";
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final VerifiedIdentityAuthenticationManager manager =
+        new VerifiedIdentityAuthenticationManager(SECRET, mapper);
+
+    @Test
+    void compareRsaAndVerifiedIdentity() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        SignedJWT signedJwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256),
+            new JWTClaimsSet.Builder()
+                .subject("writer")
+                .claim("scope", "product:read product:write")
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .build());
+        signedJwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        String token = signedJwt.serialize();
+        ReactiveJwtDecoder rsaDecoder =
+            NimbusReactiveJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+
+        String credential = createCredential(Map.of("sub", "writer", "scope",
+            "product:read product:write", "vexp", Instant.now().plusSeconds(300).getEpochSecond()));
+
+        long rsaNanos = measure(() -> rsaDecoder.decode(token).block());
+        long hmacNanos = measure(() -> manager.verify(credential));
+
+        log.info("RSA JWT:           {} ns per request", rsaNanos / ITERATIONS);
+        log.info("Verified identity: {} ns per request", hmacNanos / ITERATIONS);
+
+        Jwt jwt = manager.verify(credential);
+        assertThat(jwt.getSubject()).isEqualTo("writer");
+        assertThat(jwt.getClaimAsString("scope")).isEqualTo("product:read product:write");
+    }
+
+    // Same format as the VerifiedIdentityFilter of the gateway
+    private String createCredential(Map<String, Object> claims) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String payload = encoder.encodeToString(mapper.writeValueAsBytes(claims));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return payload + "." + encoder.encodeToString(
+            mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private long measure(Runnable verification) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            verification.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            verification.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,10 +1,17 @@
 package se.magnus.microservices.core.product.persistence;
 
+import java.util.Collection;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductRepository extends ReactiveMongoRepository<ProductEntity, String> {
 
 	Mono<ProductEntity> findByProductId(int productId);
+
+	Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+
+	Flux<ProductEntity> findAllBy(Pageable pageable);
 }
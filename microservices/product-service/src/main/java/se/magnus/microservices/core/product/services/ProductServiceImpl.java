@@ -1,12 +1,17 @@
 package se.magnus.microservices.core.product.services;
 
 import static java.util.logging.Level.FINE;
+import static se.magnus.util.http.RequestDeadline.within;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Random;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
@@ -20,6 +25,8 @@ import se.magnus.util.http.ServiceUtil;
 @RestController
 public class ProductServiceImpl implements ProductService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ServiceUtil serviceUtil;
     private final ProductRepository repository;
     private final ProductMapper mapper;
@@ -38,11 +45,39 @@ public class ProductServiceImpl implements ProductService {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
-        return repository.findByProductId(productId)
+        return within(repository.findByProductId(productId)
             .map(e -> throwErrorIfBadLuck(e, faultPercent))
             .delayElement(Duration.ofSeconds(delay))
             .switchIfEmpty(
-                Mono.error(new NotFoundException("No product found for productId: " + productId)))
+                Mono.error(new NotFoundException("No product found for productId: " + productId))))
+            .log(log.getName(), FINE).map(mapper::entityToApi).map(e -> setServiceAddress(e));
+    }
+
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            throw new InvalidInputException("No productIds given");
+        }
+        productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        log.info("Will get products for {} product ids", productIds.size());
+        return within(repository.findByProductIdIn(productIds))
+            .log(log.getName(), FINE).map(mapper::entityToApi).map(e -> setServiceAddress(e));
+    }
+
+    @Override
+    public Flux<Product> getProductPage(int page, int size) {
+        if (page < 0) {
+            throw new InvalidInputException("Invalid page: " + page);
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid page size: " + size + ", max is " + MAX_PAGE_SIZE);
+        }
+
+        log.info("Will get page {} of products, size {}", page, size);
+        return within(repository.findAllBy(PageRequest.of(page, size, Sort.by("productId"))))
             .log(log.getName(), FINE).map(mapper::entityToApi).map(e -> setServiceAddress(e));
     }
 
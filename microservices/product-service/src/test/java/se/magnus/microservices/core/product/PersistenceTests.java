@@ -1,5 +1,6 @@
 package se.magnus.microservices.core.product;
 
+import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -70,6 +71,18 @@ class PersistenceTests extends MongoDbTestBase {
             .verifyComplete();
     }
 
+    @Test
+    void getByProductIds() {
+        ProductEntity newEntity = new ProductEntity(2, "n", 2);
+        repository.save(newEntity).block();
+        repository.save(new ProductEntity(3, "n", 3)).block();
+
+        StepVerifier.create(repository.findByProductIdIn(
+                List.of(savedEntity.getProductId(), newEntity.getProductId())).count())
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
     @Test
     void duplicateError() {
         ProductEntity entity = new ProductEntity(savedEntity.getProductId(), "n", 1);
@@ -3,6 +3,7 @@ package se.magnus.microservices.core.product;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
@@ -17,15 +18,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.util.http.RequestDeadline;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {})
 class ProductServiceApplicationTests extends MongoDbTestBase {
 
+    private static final MediaType APPLICATION_SMILE =
+        MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private WebTestClient client;
 
@@ -56,6 +62,75 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
         getAndVerifyProduct(productId, OK).jsonPath("$.productId").isEqualTo(productId);
     }
 
+    @Test
+    void getProductsByIds() {
+        sendCreateProductEvent(1);
+        sendCreateProductEvent(2);
+        sendCreateProductEvent(3);
+
+        client.get().uri("/product?productIds=1,3,4").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK).expectHeader().contentType(APPLICATION_JSON)
+            .expectBody().jsonPath("$.length()").isEqualTo(2);
+    }
+
+    @Test
+    void getProductPage() {
+        sendCreateProductEvent(3);
+        sendCreateProductEvent(1);
+        sendCreateProductEvent(2);
+
+        client.get().uri("/product?page=0&size=2").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(2)
+            .jsonPath("$[0].productId").isEqualTo(1)
+            .jsonPath("$[1].productId").isEqualTo(2);
+
+        client.get().uri("/product?page=1&size=2").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(1)
+            .jsonPath("$[0].productId").isEqualTo(3);
+    }
+
+    @Test
+    void getProductPageInvalidSize() {
+        client.get().uri("/product?page=0&size=0").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+            .expectBody().jsonPath("$.message").isEqualTo("Invalid page size: 0, max is 100");
+    }
+
+    @Test
+    void getProductsInvalidParameterNegativeValue() {
+        client.get().uri("/product?productIds=1,-1").accept(APPLICATION_JSON).exchange()
+            .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+            .expectBody().jsonPath("$.message").isEqualTo("Invalid productId: -1");
+    }
+
+    @Test
+    void getProductAsSmile() {
+        sendCreateProductEvent(1);
+
+        client.get().uri("/product/1").accept(APPLICATION_SMILE).exchange()
+            .expectStatus().isEqualTo(OK).expectHeader().contentType(APPLICATION_SMILE)
+            .expectBody(Product.class).value(product -> assertThat(product.getProductId()).isEqualTo(1));
+    }
+
+    @Test
+    void getProductWithExceededDeadline() {
+        sendCreateProductEvent(1);
+
+        long deadline = System.currentTimeMillis() - 1000;
+        client.get().uri("/product/1").accept(APPLICATION_JSON)
+            .header(RequestDeadline.HEADER, String.valueOf(deadline)).exchange()
+            .expectStatus().isEqualTo(GATEWAY_TIMEOUT);
+
+        deadline = System.currentTimeMillis() + 500;
+        client.get().uri("/product/1?delay=1").accept(APPLICATION_JSON)
+            .header(RequestDeadline.HEADER, String.valueOf(deadline)).exchange()
+            .expectStatus().isEqualTo(GATEWAY_TIMEOUT);
+    }
+
     @Test
     void duplicateError() {
         int productId = 1;
@@ -1,5 +1,6 @@
 package se.magnus.microservices.core.recommendation.persistence;
 
+import java.util.Collection;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
@@ -7,4 +8,6 @@ public interface RecommendationRepository extends
     ReactiveMongoRepository<RecommendationEntity, String> {
 
     Flux<RecommendationEntity> findByProductId(int productId);
+
+    Flux<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds);
 }
@@ -32,6 +32,12 @@ public class MessageProcessorConfig {
                     recommendationService.createRecommendation(recommendation).block();
                     break;
 
+                case CREATE_BATCH:
+                    log.info("Create {} recommendations with ProductID: {}", event.getItems().size(),
+                        event.getKey());
+                    recommendationService.createRecommendations(event.getItems()).blockLast();
+                    break;
+
                 case DELETE:
                     int productId = event.getKey();
                     log.info("Delete recommendations with ProductID: {}", productId);
@@ -40,7 +46,7 @@ public class MessageProcessorConfig {
 
                 default:
                     String errorMessage = "Incorrect event type: " + event.getEventType()
-                        + ", expected a CREATE or DELETE event";
+                        + ", expected a CREATE, CREATE_BATCH or DELETE event";
                     log.warn(errorMessage);
                     throw new EventProcessingException(errorMessage);
             }
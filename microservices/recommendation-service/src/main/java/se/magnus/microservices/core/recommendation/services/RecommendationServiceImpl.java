@@ -1,8 +1,15 @@
 package se.magnus.microservices.core.recommendation.services;
 
 import static java.util.logging.Level.*;
+import static se.magnus.util.http.RequestDeadline.within;
 
+import java.util.List;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.extern.slf4j.Slf4j;
@@ -19,15 +26,19 @@ import se.magnus.util.http.ServiceUtil;
 @Slf4j
 public class RecommendationServiceImpl implements RecommendationService {
 
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
     private final ServiceUtil serviceUtil;
     private final RecommendationRepository repository;
     private final RecommendationMapper mapper;
+    private final ReactiveMongoOperations mongoOperations;
 
     public RecommendationServiceImpl(ServiceUtil serviceUtil, RecommendationRepository repository,
-        RecommendationMapper mapper) {
+        RecommendationMapper mapper, ReactiveMongoOperations mongoOperations) {
         this.serviceUtil = serviceUtil;
         this.repository = repository;
         this.mapper = mapper;
+        this.mongoOperations = mongoOperations;
     }
 
     @Override
@@ -39,7 +50,24 @@ public class RecommendationServiceImpl implements RecommendationService {
 
         log.info("Will get recommendations for product with id={}", productId);
 
-        return repository.findByProductId(productId).log(log.getName(), FINE)
+        return within(repository.findByProductId(productId)).log(log.getName(), FINE)
+            .map(mapper::entityToApi)
+            .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendations(List<Integer> productIds) {
+
+        if (productIds.isEmpty()) {
+            throw new InvalidInputException("No productIds given");
+        }
+        productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        log.info("Will get recommendations for {} product ids", productIds.size());
+
+        return within(repository.findByProductIdIn(productIds)).log(log.getName(), FINE)
             .map(mapper::entityToApi)
             .map(this::setServiceAddress);
     }
@@ -68,6 +96,60 @@ public class RecommendationServiceImpl implements RecommendationService {
         return newEntity;
     }
 
+    @Override
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        body.stream().filter(r -> r.getProductId() < 1).findFirst().ifPresent(r -> {
+            throw new InvalidInputException("Invalid productId: " + r.getProductId());
+        });
+
+        log.debug("createRecommendations: creates {} recommendations", body.size());
+
+        List<RecommendationEntity> entities = body.stream().map(mapper::apiToEntity).toList();
+        if (entities.isEmpty()) {
+            return Flux.empty();
+        }
+        // A bulk insert does not initialize the version as save() does
+        entities.forEach(e -> e.setVersion(0));
+
+        // One unordered bulk insert, i.e. a duplicate doesn't stop the rest of the batch. The
+        // duplicates are reported once the others are created, same as for a single one
+        return mongoOperations.bulkOps(BulkMode.UNORDERED, RecommendationEntity.class)
+            .insert(entities)
+            .execute()
+            .log(log.getName(), FINE)
+            .thenReturn(List.<Integer>of())
+            .onErrorResume(ex -> getDuplicateIndexes(ex) != null,
+                ex -> Mono.just(getDuplicateIndexes(ex)))
+            .flatMapMany(duplicates -> {
+                Flux<Recommendation> created = Flux.range(0, entities.size())
+                    .filter(i -> !duplicates.contains(i))
+                    .map(i -> mapper.entityToApi(entities.get(i)));
+                if (duplicates.isEmpty()) {
+                    return created;
+                }
+                List<Integer> duplicateIds = duplicates.stream()
+                    .map(i -> body.get(i).getRecommendationId()).toList();
+                return created.concatWith(Mono.error(new InvalidInputException(
+                    "Duplicate key, Product Id: " + body.get(0).getProductId()
+                        + ", Recommendation Ids:" + duplicateIds)));
+            });
+    }
+
+    // The indexes within the batch of the entities that were rejected as duplicates, or null if
+    // the error is not only about duplicates
+    private static List<Integer> getDuplicateIndexes(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            List<BulkWriteError> errors = cause instanceof BulkOperationException boe
+                ? boe.getErrors()
+                : cause instanceof MongoBulkWriteException mbwe ? mbwe.getWriteErrors() : null;
+            if (errors != null) {
+                return errors.stream().allMatch(e -> e.getCode() == DUPLICATE_KEY_ERROR)
+                    ? errors.stream().map(BulkWriteError::getIndex).toList() : null;
+            }
+        }
+        return null;
+    }
+
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
         if (productId < 1) {
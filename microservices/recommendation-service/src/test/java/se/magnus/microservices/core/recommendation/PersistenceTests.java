@@ -67,6 +67,17 @@ class PersistenceTests extends MongoDbTestBase {
         assertEqualsRecommendation(savedEntity, entityList.get(0));
     }
 
+    @Test
+    void getByProductIds() {
+        repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+        repository.save(new RecommendationEntity(3, 1, "a", 3, "c")).block();
+
+        List<RecommendationEntity> entityList = repository.findByProductIdIn(
+            List.of(savedEntity.getProductId(), 2)).collectList().block();
+
+        assertThat(entityList).hasSize(2);
+    }
+
     @Test
     void duplicateError() {
         assertThatThrownBy(() -> {
@@ -10,6 +10,7 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 
+import java.util.List;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -57,6 +58,37 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
             .isEqualTo(3);
     }
 
+    @Test
+    void createRecommendationsInBatch() {
+        int productId = 1;
+
+        List<Recommendation> recommendations = List.of(
+            new Recommendation(productId, 1, "Author 1", 1, "Content 1", "SA"),
+            new Recommendation(productId, 2, "Author 2", 2, "Content 2", "SA"));
+        messageProcessor.accept(Event.createBatch(productId, recommendations));
+
+        assertThat(repository.findByProductId(productId).count().block()).isEqualTo(2);
+    }
+
+    @Test
+    void duplicateInBatchCreatesTheOthers() {
+        int productId = 1;
+
+        sendCreateRecommendationEvent(productId, 2);
+
+        List<Recommendation> recommendations = List.of(
+            new Recommendation(productId, 1, "Author 1", 1, "Content 1", "SA"),
+            new Recommendation(productId, 2, "Author 2", 2, "Content 2", "SA"),
+            new Recommendation(productId, 3, "Author 3", 3, "Content 3", "SA"));
+
+        assertThatThrownBy(
+            () -> messageProcessor.accept(Event.createBatch(productId, recommendations)))
+            .isInstanceOf(InvalidInputException.class)
+            .hasMessage("Duplicate key, Product Id: 1, Recommendation Ids:[2]");
+
+        assertThat(repository.findByProductId(productId).count().block()).isEqualTo(3);
+    }
+
     @Test
     void duplicateError() {
 
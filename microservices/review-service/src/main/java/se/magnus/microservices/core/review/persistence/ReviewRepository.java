@@ -3,9 +3,17 @@ package se.magnus.microservices.core.review.persistence;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewRepository extends JpaRepository<ReviewEntity, Integer> {
     @Transactional(readOnly = true)
     List<ReviewEntity> findByProductId(int productId);
+
+    @Transactional(readOnly = true)
+    List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds);
+
+    @Transactional(readOnly = true)
+    List<ReviewEntity> findByProductIdInAndReviewIdIn(Collection<Integer> productIds,
+        Collection<Integer> reviewIds);
 }
@@ -31,6 +31,12 @@ public class MessageProcessorConfig {
                     reviewService.createReview(review).block();
                     break;
 
+                case CREATE_BATCH:
+                    log.info("Create {} reviews with ProductID: {}", event.getItems().size(),
+                        event.getKey());
+                    reviewService.createReviews(event.getItems()).blockLast();
+                    break;
+
                 case DELETE:
                     int productId = event.getKey();
                     log.info("Delete reviews with ProductID: {}", productId);
@@ -39,7 +45,7 @@ public class MessageProcessorConfig {
 
                 default:
                     String errorMessage = "Incorrect event type: " + event.getEventType()
-                        + ", expected a CREATE or DELETE event";
+                        + ", expected a CREATE, CREATE_BATCH or DELETE event";
                     log.warn(errorMessage);
                     throw new EventProcessingException(errorMessage);
             }
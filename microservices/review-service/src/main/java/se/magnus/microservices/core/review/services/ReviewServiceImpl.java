@@ -1,8 +1,13 @@
 package se.magnus.microservices.core.review.services;
 
 import static java.util.logging.Level.FINE;
+import static java.util.stream.Collectors.partitioningBy;
+import static java.util.stream.Collectors.toSet;
+import static se.magnus.util.http.RequestDeadline.within;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -42,7 +47,9 @@ public class ReviewServiceImpl implements ReviewService {
         }
 
         log.info("Will get reviews for product with id={}", productId);
-        return Mono.fromCallable(() -> internalGetReviews(productId))
+
+        // The deadline is checked on the JDBC thread, i.e. after waiting for a free thread
+        return within(Mono.fromCallable(() -> internalGetReviews(productId)))
             .flatMapMany(Flux::fromIterable).log(log.getName(), FINE).subscribeOn(jdbcScheduler);
     }
 
@@ -55,6 +62,30 @@ public class ReviewServiceImpl implements ReviewService {
         return list;
     }
 
+    @Override
+    public Flux<Review> getReviews(List<Integer> productIds) {
+
+        if (productIds.isEmpty()) {
+            throw new InvalidInputException("No productIds given");
+        }
+        productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        log.info("Will get reviews for {} product ids", productIds.size());
+        return within(Mono.fromCallable(() -> internalGetReviews(productIds)))
+            .flatMapMany(Flux::fromIterable).log(log.getName(), FINE).subscribeOn(jdbcScheduler);
+    }
+
+    private List<Review> internalGetReviews(List<Integer> productIds) {
+        List<ReviewEntity> entityList = repository.findByProductIdIn(productIds);
+        List<Review> list = mapper.entityListToApiList(entityList);
+        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+
+        log.debug("Response size: {}", list.size());
+        return list;
+    }
+
     @Override
     public Mono<Review> createReview(Review body) {
 
@@ -81,6 +112,60 @@ public class ReviewServiceImpl implements ReviewService {
         }
     }
 
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        body.stream().filter(r -> r.getProductId() < 1).findFirst().ifPresent(r -> {
+            throw new InvalidInputException("Invalid productId: " + r.getProductId());
+        });
+
+        return Mono.fromCallable(() -> internalCreateReviews(body))
+            .flatMapMany(result -> Flux.fromIterable(result.created())
+                .concatWith(duplicateError(body, result.duplicates())))
+            .subscribeOn(jdbcScheduler);
+    }
+
+    // The existing reviews are looked up first and the others are saved with one saveAll, i.e.
+    // in one transaction. The duplicates are reported once the others are created, same as for a
+    // single review. A review created concurrently in between fails the whole batch
+    private CreatedReviews internalCreateReviews(List<Review> body) {
+        if (body.isEmpty()) {
+            return new CreatedReviews(List.of(), List.of());
+        }
+
+        Set<List<Integer>> existing = repository.findByProductIdInAndReviewIdIn(
+                body.stream().map(Review::getProductId).collect(toSet()),
+                body.stream().map(Review::getReviewId).collect(toSet())).stream()
+            .map(e -> List.of(e.getProductId(), e.getReviewId()))
+            .collect(toSet());
+
+        Map<Boolean, List<Review>> partitioned = body.stream().collect(partitioningBy(
+            r -> existing.contains(List.of(r.getProductId(), r.getReviewId()))));
+        List<Integer> duplicates = partitioned.get(true).stream().map(Review::getReviewId).toList();
+
+        try {
+            List<ReviewEntity> entities = repository.saveAll(
+                mapper.apiListToEntityList(partitioned.get(false)));
+
+            log.debug("createReviews: created {} review entities, {} duplicates", entities.size(),
+                duplicates.size());
+            return new CreatedReviews(mapper.entityListToApiList(entities), duplicates);
+        } catch (DataIntegrityViolationException dive) {
+            throw new InvalidInputException("Duplicate key, " + dive.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private Flux<Review> duplicateError(List<Review> body, List<Integer> duplicates) {
+        if (duplicates.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.error(new InvalidInputException(
+            "Duplicate key, Product Id: " + body.get(0).getProductId() + ", Review Ids:"
+                + duplicates));
+    }
+
+    private record CreatedReviews(List<Review> created, List<Integer> duplicates) {
+    }
+
     @Override
     public Mono<Void> deleteReviews(int productId) {
 
@@ -10,6 +10,11 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.util.List;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +22,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.event.Event;
@@ -26,6 +32,9 @@ import se.magnus.microservices.core.review.persistence.ReviewRepository;
 @SpringBootTest(webEnvironment = RANDOM_PORT, properties = {})
 class ReviewServiceApplicationTests extends MySqlTestBase {
 
+    private static final MediaType APPLICATION_SMILE =
+        MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private WebTestClient client;
 
@@ -60,6 +69,56 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
             .jsonPath("$[2].reviewId").isEqualTo(3);
     }
 
+    @Test
+    void getReviewsAsSmile() throws IOException {
+        int productId = 1;
+        sendCreateReviewEvent(productId, 1);
+        sendCreateReviewEvent(productId, 2);
+
+        byte[] body = client.get().uri("/review?productId=" + productId).accept(APPLICATION_SMILE)
+            .exchange()
+            .expectStatus().isEqualTo(OK)
+            .expectHeader().contentType(APPLICATION_SMILE)
+            .expectBody(byte[].class).returnResult().getResponseBody();
+
+        // The Flux shall be written as one Smile array, as the composite decodes it
+        List<Review> reviews = new ObjectMapper(new SmileFactory())
+            .readValue(body, new TypeReference<List<Review>>() {
+            });
+        assertThat(reviews).extracting(Review::getReviewId).containsExactly(1, 2);
+        assertThat(reviews).allMatch(review -> review.getProductId() == productId);
+    }
+
+    @Test
+    void createReviewsInBatch() {
+        int productId = 1;
+
+        List<Review> reviews = List.of(
+            new Review(productId, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+            new Review(productId, 2, "Author 2", "Subject 2", "Content 2", "SA"));
+        messageProcessor.accept(Event.createBatch(productId, reviews));
+
+        assertThat(repository.findByProductId(productId)).hasSize(2);
+    }
+
+    @Test
+    void duplicateInBatchCreatesTheOthers() {
+        int productId = 1;
+
+        sendCreateReviewEvent(productId, 2);
+
+        List<Review> reviews = List.of(
+            new Review(productId, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+            new Review(productId, 2, "Author 2", "Subject 2", "Content 2", "SA"),
+            new Review(productId, 3, "Author 3", "Subject 3", "Content 3", "SA"));
+
+        assertThatThrownBy(() -> messageProcessor.accept(Event.createBatch(productId, reviews)))
+            .isInstanceOf(InvalidInputException.class)
+            .hasMessage("Duplicate key, Product Id: 1, Review Ids:[2]");
+
+        assertThat(repository.findByProductId(productId)).hasSize(3);
+    }
+
     @Test
     void duplicateError() {
 
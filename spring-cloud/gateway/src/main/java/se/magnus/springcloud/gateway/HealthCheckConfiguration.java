@@ -2,9 +2,14 @@ package se.magnus.springcloud.gateway;
 
 import static java.util.logging.Level.FINE;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.CompositeReactiveHealthContributor;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.ReactiveHealthContributor;
@@ -13,31 +18,56 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import se.magnus.util.health.CachedHealthIndicator;
 
 @Slf4j
 @Configuration
-public class HealthCheckConfiguration {
+public class HealthCheckConfiguration implements DisposableBean {
 
     private final WebClient webClient;
+    private final Duration refreshInterval;
+    private final double jitter;
+    private final Duration timeout;
+    private final List<CachedHealthIndicator> indicators = new ArrayList<>();
 
-    public HealthCheckConfiguration(WebClient.Builder webClientBuilder) {
+    public HealthCheckConfiguration(
+        WebClient.Builder webClientBuilder,
+        @Value("${app.health-check.refresh-interval:10s}") Duration refreshInterval,
+        @Value("${app.health-check.jitter:0.2}") double jitter,
+        @Value("${app.health-check.timeout:5s}") Duration timeout) {
         this.webClient = webClientBuilder
             .build();
+        this.refreshInterval = refreshInterval;
+        this.jitter = jitter;
+        this.timeout = timeout;
     }
 
     @Bean
     ReactiveHealthContributor healthcheckMicroservices() {
         final Map<String, ReactiveHealthIndicator> registry = new LinkedHashMap<>();
 
-        registry.put("product", () -> getHealth("http://product"));
-        registry.put("recommendation", () -> getHealth("http://recommendation"));
-        registry.put("review", () -> getHealth("http://review"));
-        registry.put("product-composite", () -> getHealth("http://product-composite"));
-        registry.put("auth-server", () -> getHealth("http://auth-server"));
+        registry.put("product", cached("product", "http://product"));
+        registry.put("recommendation", cached("recommendation", "http://recommendation"));
+        registry.put("review", cached("review", "http://review"));
+        registry.put("product-composite", cached("product-composite", "http://product-composite"));
+        registry.put("auth-server", cached("auth-server", "http://auth-server"));
 
         return CompositeReactiveHealthContributor.fromMap(registry);
     }
 
+    @Override
+    public void destroy() {
+        indicators.forEach(CachedHealthIndicator::stop);
+    }
+
+    private ReactiveHealthIndicator cached(String name, String baseUrl) {
+        CachedHealthIndicator indicator = new CachedHealthIndicator(name, () -> getHealth(baseUrl),
+            refreshInterval, jitter, timeout);
+        indicators.add(indicator);
+        indicator.start();
+        return indicator;
+    }
+
     private Mono<Health> getHealth(String baseUrl) {
         String url = baseUrl + "/actuator/health";
         log.debug("Setting up a call to the Health API on URL: {}", url);
@@ -0,0 +1,52 @@
+package se.magnus.springcloud.gateway;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+public class RequestDeadlineFilter implements GlobalFilter, Ordered {
+
+    // Absolute deadline of the request in epoch milliseconds, see RequestDeadline in the util project
+    static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    private final Duration budget;
+
+    public RequestDeadlineFilter(@Value("${app.request-deadline.budget:10s}") Duration budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long deadline = System.currentTimeMillis() + budget.toMillis();
+
+        // A client may ask for a shorter deadline, but not for a longer one
+        String requested = exchange.getRequest().getHeaders().getFirst(DEADLINE_HEADER);
+        if (requested != null) {
+            try {
+                deadline = Math.min(deadline, Long.parseLong(requested));
+            } catch (NumberFormatException ex) {
+                log.debug("Ignores invalid {} header: {}", DEADLINE_HEADER, requested);
+            }
+        }
+
+        String value = String.valueOf(deadline);
+        ServerHttpRequest request = exchange.getRequest().mutate()
+            .headers(headers -> headers.set(DEADLINE_HEADER, value))
+            .build();
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
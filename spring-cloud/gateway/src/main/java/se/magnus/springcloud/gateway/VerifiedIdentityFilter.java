@@ -0,0 +1,112 @@
+package se.magnus.springcloud.gateway;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+// Forwards the claims of the verified JWT as a short lived, HMAC signed credential, i.e. the
+// downstream services do not have to verify the RSA signature again. The format is
+// base64url(claims as JSON) + "." + base64url(HMAC-SHA256 of the first part), where the claim
+// vexp is the expiry of the credential in epoch seconds
+@Slf4j
+@Component
+public class VerifiedIdentityFilter implements GlobalFilter, Ordered {
+
+    static final String HEADER = "X-Verified-Identity";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final ObjectMapper mapper;
+    private final SecretKeySpec key;
+
+    public VerifiedIdentityFilter(
+        @Value("${app.verified-identity.enabled:false}") boolean enabled,
+        @Value("${app.verified-identity.secret:}") String secret,
+        @Value("${app.verified-identity.ttl:30s}") Duration ttl,
+        ObjectMapper mapper) {
+
+        if (enabled && secret.length() < 32) {
+            throw new IllegalStateException("app.verified-identity.secret must be at least 32 characters");
+        }
+        log.info("Creates a verified identity filter, enabled = {}, ttl = {}", enabled, ttl);
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.mapper = mapper;
+        this.key = enabled ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256")
+            : null;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // A credential sent by a client is never passed on
+        ServerWebExchange stripped = exchange.mutate()
+            .request(request -> request.headers(headers -> headers.remove(HEADER)))
+            .build();
+        if (!enabled) {
+            return chain.filter(stripped);
+        }
+
+        return ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .filter(JwtAuthenticationToken.class::isInstance)
+            .map(authentication -> sign(((JwtAuthenticationToken) authentication).getToken()))
+            .map(credential -> stripped.mutate()
+                .request(request -> request.headers(headers -> headers.set(HEADER, credential)))
+                .build())
+            .defaultIfEmpty(stripped)
+            .flatMap(chain::filter);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    private String sign(Jwt jwt) {
+        Instant expiresAt = Instant.now().plus(ttl);
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = jwt.getExpiresAt();
+        }
+
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", jwt.getSubject());
+        claims.put("iss", jwt.getClaimAsString("iss"));
+        claims.put("aud", jwt.getAudience());
+        claims.put("scope", jwt.getClaims().get("scope"));
+        claims.put("iat", jwt.getIssuedAt() == null ? null : jwt.getIssuedAt().getEpochSecond());
+        claims.put("exp", jwt.getExpiresAt() == null ? null : jwt.getExpiresAt().getEpochSecond());
+        claims.put("vexp", expiresAt.getEpochSecond());
+
+        try {
+            String payload = ENCODER.encodeToString(mapper.writeValueAsBytes(claims));
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return payload + "." + ENCODER.encodeToString(
+                mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (JsonProcessingException | GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to sign verified identity", ex);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package se.magnus.springcloud.gateway;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+class VerifiedIdentityFilterTests {
+
+    private static final String SECRET = "a-secret-of-at-least-32-characters!";
+    private static final String FORGED = "forged.credential";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.set(exchange);
+        return Mono.empty();
+    };
+
+    @Test
+    void clientSuppliedIdentityIsStrippedWhenDisabled() {
+        filter(new VerifiedIdentityFilter(false, "", Duration.ofSeconds(30), mapper), null);
+
+        assertThat(forwardedIdentity()).isNull();
+    }
+
+    @Test
+    void clientSuppliedIdentityIsStrippedWithoutAuthentication() {
+        filter(createFilter(), null);
+
+        assertThat(forwardedIdentity()).isNull();
+    }
+
+    @Test
+    void identityIsOnlyAddedForJwtAuthentication() {
+        filter(createFilter(), new TestingAuthenticationToken("user", "password", "ROLE_USER"));
+
+        assertThat(forwardedIdentity()).isNull();
+    }
+
+    @Test
+    void jwtAuthenticationReplacesClientSuppliedIdentity() throws Exception {
+        Jwt jwt = Jwt.withTokenValue("token")
+            .header("alg", "RS256")
+            .subject("writer")
+            .claim("scope", "product:read product:write")
+            .expiresAt(Instant.now().plusSeconds(300))
+            .build();
+
+        filter(createFilter(), new JwtAuthenticationToken(jwt));
+
+        String credential = forwardedIdentity();
+        assertThat(credential).isNotEqualTo(FORGED);
+        String[] parts = credential.split("\\.");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        assertThat(Base64.getUrlDecoder().decode(parts[1]))
+            .isEqualTo(mac.doFinal(parts[0].getBytes(StandardCharsets.US_ASCII)));
+        Map<?, ?> claims = mapper.readValue(Base64.getUrlDecoder().decode(parts[0]), Map.class);
+        assertThat(claims.get("sub")).isEqualTo("writer");
+        assertThat(claims.get("scope")).isEqualTo("product:read product:write");
+    }
+
+    private void filter(VerifiedIdentityFilter filter, Authentication authentication) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+            MockServerHttpRequest.get("/product-composite/1")
+                .header(VerifiedIdentityFilter.HEADER, FORGED));
+        Mono<Void> filtered = filter.filter(exchange, chain);
+        if (authentication != null) {
+            filtered = filtered.contextWrite(
+                ReactiveSecurityContextHolder.withAuthentication(authentication));
+        }
+        filtered.block();
+    }
+
+    private String forwardedIdentity() {
+        assertThat(forwarded.get()).isNotNull();
+        return forwarded.get().getRequest().getHeaders().getFirst(VerifiedIdentityFilter.HEADER);
+    }
+
+    private VerifiedIdentityFilter createFilter() {
+        return new VerifiedIdentityFilter(true, SECRET, Duration.ofSeconds(30), mapper);
+    }
+}
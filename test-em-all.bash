@@ -179,6 +179,9 @@ function testCircuitBreaker() {
     EXEC="kubectl -n $NAMESPACE exec deploy/product-composite -- "
   fi
 
+  # Bypass the composite's product aggregate cache, the calls must reach the circuit breaker
+  NO_CACHE="-H \"Cache-Control: no-cache\""
+
   assertEqual "CLOSED" "$($EXEC curl -s http://localhost/actuator/health | jq -r .components.circuitBreakers.details.product.details.state)"
 
   for ((n=0; n<3; n++))
@@ -191,16 +194,18 @@ function testCircuitBreaker() {
       # Verify that the circuit breaker is open
       assertEqual "OPEN" "$($EXEC curl -s http://localhost/actuator/health | jq -r .components.circuitBreakers.details.product.details.state)"
 
-      # Verify that the circuit breaker now is open by running the slow call again, verify it gets 200 back, i.e. fail fast works, and a response from the fallback method.
+      # Verify that the circuit breaker now is open by running the slow call again, verify it gets 200 back, i.e. fail fast works, and the last known product from the fallback method.
       assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS?delay=3 $AUTH -s"
-      assertEqual "Fallback product$PROD_ID_REVS_RECS" "$(echo "$RESPONSE" | jq -r .name)"
+      assertEqual "product name C" "$(echo "$RESPONSE" | jq -r .name)"
+      assertEqual "true" "$(echo "$RESPONSE" | jq -r .stale)"
 
-      # Also, verify that the circuit breaker is open by running a normal call, verify it also gets 200 back and a response from the fallback method.
-      assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH -s"
-      assertEqual "Fallback product$PROD_ID_REVS_RECS" "$(echo "$RESPONSE" | jq -r .name)"
+      # Also, verify that the circuit breaker is open by running a normal call, verify it also gets 200 back and the last known product from the fallback method.
+      assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH $NO_CACHE -s"
+      assertEqual "product name C" "$(echo "$RESPONSE" | jq -r .name)"
+      assertEqual "true" "$(echo "$RESPONSE" | jq -r .stale)"
 
       # Verify that a 404 (Not Found) error is returned for a non existing productId ($PROD_ID_NOT_FOUND) from the fallback method.
-      assertCurl 404 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_NOT_FOUND $AUTH -s"
+      assertCurl 404 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_NOT_FOUND $AUTH $NO_CACHE -s"
       assertEqual "Product Id: $PROD_ID_NOT_FOUND not found in fallback cache!" "$(echo $RESPONSE | jq -r .message)"
 
       # Wait for the circuit breaker to transition to the half open state (i.e. max 10 sec)
@@ -214,7 +219,7 @@ function testCircuitBreaker() {
       # Also, verify that we get 200 back and a response based on information in the product database
       for ((n=0; n<3; n++))
       do
-          assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH -s"
+          assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH $NO_CACHE -s"
           assertEqual "product name C" "$(echo "$RESPONSE" | jq -r .name)"
       done
 
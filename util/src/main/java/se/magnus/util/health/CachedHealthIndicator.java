@@ -0,0 +1,99 @@
+package se.magnus.util.health;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+// Checks a downstream service in the background and answers health probes from the last result,
+// i.e. the probes of many replicas do not fan out to the downstream services
+public class CachedHealthIndicator implements ReactiveHealthIndicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedHealthIndicator.class);
+
+    private final String name;
+    private final Supplier<Mono<Health>> check;
+    private final Duration refreshInterval;
+    private final double jitter;
+    private final Duration timeout;
+
+    private volatile Health health = Health.unknown().withDetail("reason", "Not checked yet").build();
+    private volatile Instant checkedAt;
+    private Disposable refresher;
+
+    public CachedHealthIndicator(String name, Supplier<Mono<Health>> check,
+        Duration refreshInterval, double jitter, Duration timeout) {
+        this.name = name;
+        this.check = check;
+        this.refreshInterval = refreshInterval;
+        this.jitter = jitter;
+        this.timeout = timeout;
+    }
+
+    // Starts the background checks unless they are running already
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+
+        // The first check is also delayed by a random part of the jitter so that replicas started
+        // together do not check in step
+        refresher = Mono.delay(initialDelay())
+            .then(Mono.defer(this::refresh)
+                .then(Mono.defer(() -> Mono.delay(nextDelay())))
+                .repeat()
+                .then())
+            .subscribe();
+    }
+
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Health> health() {
+        Instant checkedAt = this.checkedAt;
+        Health health = this.health;
+        if (checkedAt == null) {
+            return Mono.just(health);
+        }
+        return Mono.just(Health.status(health.getStatus())
+            .withDetails(health.getDetails())
+            .withDetail("checkedAt", checkedAt.toString())
+            .withDetail("ageMs", Duration.between(checkedAt, Instant.now()).toMillis())
+            .build());
+    }
+
+    private Mono<Void> refresh() {
+        return Mono.defer(check)
+            .timeout(timeout)
+            .onErrorResume(ex -> Mono.just(Health.down(ex).build()))
+            .doOnNext(result -> {
+                LOG.debug("Health of {} is {}", name, result.getStatus());
+                health = result;
+                checkedAt = Instant.now();
+            })
+            .then();
+    }
+
+    private Duration initialDelay() {
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(getSpread() + 1));
+    }
+
+    private Duration nextDelay() {
+        long spread = getSpread();
+        return refreshInterval.plusMillis(ThreadLocalRandom.current().nextLong(-spread, spread + 1));
+    }
+
+    private long getSpread() {
+        return (long) (refreshInterval.toMillis() * Math.min(Math.max(jitter, 0), 1));
+    }
+}
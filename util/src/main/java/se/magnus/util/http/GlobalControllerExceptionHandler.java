@@ -8,10 +8,14 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import se.magnus.api.exceptions.DeadlineExceededException;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.api.exceptions.ServiceUnavailableException;
 
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
 @RestControllerAdvice
@@ -31,6 +35,18 @@ public class GlobalControllerExceptionHandler {
         return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
     }
 
+    @ResponseStatus(SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public @ResponseBody HttpErrorInfo handleServiceUnavailableException(ServerHttpRequest request, ServiceUnavailableException ex) {
+        return createHttpErrorInfo(SERVICE_UNAVAILABLE, request, ex);
+    }
+
+    @ResponseStatus(GATEWAY_TIMEOUT)
+    @ExceptionHandler(DeadlineExceededException.class)
+    public @ResponseBody HttpErrorInfo handleDeadlineExceededException(ServerHttpRequest request, DeadlineExceededException ex) {
+        return createHttpErrorInfo(GATEWAY_TIMEOUT, request, ex);
+    }
+
     private HttpErrorInfo createHttpErrorInfo(HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
 
         final String path = request.getPath().pathWithinApplication().value();
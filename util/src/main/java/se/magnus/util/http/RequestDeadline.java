@@ -0,0 +1,63 @@
+package se.magnus.util.http;
+
+import java.time.Duration;
+import java.util.Optional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import se.magnus.api.exceptions.DeadlineExceededException;
+
+public final class RequestDeadline {
+
+    // Absolute deadline of the request in epoch milliseconds
+    public static final String HEADER = "X-Request-Deadline";
+
+    private static final String CONTEXT_KEY = RequestDeadline.class.getName();
+
+    private RequestDeadline() {
+    }
+
+    public static Context withDeadline(Context context, long deadline) {
+        return context.put(CONTEXT_KEY, deadline);
+    }
+
+    public static Context withoutDeadline(Context context) {
+        return context.delete(CONTEXT_KEY);
+    }
+
+    public static Optional<Long> getDeadline(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    public static <T> Mono<T> within(Mono<T> source) {
+        return Mono.deferContextual(context -> getDeadline(context)
+            .map(deadline -> isExceeded(deadline) ? Mono.<T>error(exceeded(deadline))
+                : source.timeout(remaining(deadline), Mono.error(() -> exceeded(deadline))))
+            .orElse(source));
+    }
+
+    public static <T> Flux<T> within(Flux<T> source) {
+        // The timeout is renewed per element with the time that remains, i.e. it applies to the
+        // whole Flux and not to the gap between two elements
+        return Flux.deferContextual(context -> getDeadline(context)
+            .map(deadline -> isExceeded(deadline) ? Flux.<T>error(exceeded(deadline))
+                : source.timeout(Mono.delay(remaining(deadline)),
+                    element -> Mono.delay(remaining(deadline)),
+                    Flux.error(() -> exceeded(deadline))))
+            .orElse(source));
+    }
+
+    private static boolean isExceeded(long deadline) {
+        return deadline <= System.currentTimeMillis();
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofMillis(Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
+    private static DeadlineExceededException exceeded(long deadline) {
+        return new DeadlineExceededException("Request deadline exceeded by "
+            + (System.currentTimeMillis() - deadline) + " ms");
+    }
+}
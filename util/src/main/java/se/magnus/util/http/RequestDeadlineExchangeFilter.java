@@ -0,0 +1,19 @@
+package se.magnus.util.http;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+public class RequestDeadlineExchangeFilter implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> RequestDeadline.getDeadline(context)
+            .map(deadline -> RequestDeadline.within(next.exchange(ClientRequest.from(request)
+                .header(RequestDeadline.HEADER, String.valueOf(deadline))
+                .build())))
+            .orElseGet(() -> next.exchange(request)));
+    }
+}
@@ -0,0 +1,45 @@
+package se.magnus.util.http;
+
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+@Component
+public class RequestDeadlineWebFilter implements WebFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestDeadlineWebFilter.class);
+
+    private final Duration defaultBudget;
+
+    public RequestDeadlineWebFilter(
+        @Value("${app.request-deadline.default-budget:0s}") Duration defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Long deadline = getDeadline(exchange.getRequest().getHeaders().getFirst(RequestDeadline.HEADER));
+        if (deadline == null) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+            .contextWrite(context -> RequestDeadline.withDeadline(context, deadline));
+    }
+
+    private Long getDeadline(String header) {
+        if (header != null) {
+            try {
+                return Long.parseLong(header);
+            } catch (NumberFormatException ex) {
+                LOG.debug("Ignores invalid {} header: {}", RequestDeadline.HEADER, header);
+            }
+        }
+        return defaultBudget.isZero() ? null : System.currentTimeMillis() + defaultBudget.toMillis();
+    }
+}
@@ -0,0 +1,77 @@
+package se.magnus.util.messaging;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+// Reads event payloads that the producer has sent as gzip compressed JSON, the content type
+// header of the message tells the codec, other messages are left to the default JSON converter
+@Component
+public class GzipJsonMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-gzip-json";
+
+    private final ObjectMapper mapper;
+
+    public GzipJsonMessageConverter(ObjectMapper mapper) {
+        super(MimeType.valueOf(CONTENT_TYPE));
+        this.mapper = mapper;
+    }
+
+    public static byte[] compress(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return compressed.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] payload) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass,
+        Object conversionHint) {
+
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+
+        // Spring Cloud Function passes the generic type of the consumer, e.g. Event<Integer, Review>
+        JavaType type = conversionHint instanceof Type genericType
+            ? mapper.getTypeFactory().constructType(genericType)
+            : mapper.getTypeFactory().constructType(targetClass);
+        try {
+            return mapper.readValue(decompress(payload), type);
+        } catch (IOException ex) {
+            throw new MessageConversionException(message, "Failed to read gzip compressed JSON", ex);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package se.magnus.util.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+class CachedHealthIndicatorTests {
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(10);
+
+    private VirtualTimeScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = VirtualTimeScheduler.getOrSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        VirtualTimeScheduler.reset();
+    }
+
+    @Test
+    void answersProbesFromSnapshot() {
+        AtomicInteger checks = new AtomicInteger();
+        CachedHealthIndicator indicator = new CachedHealthIndicator("test", () -> {
+            checks.incrementAndGet();
+            return Mono.just(Health.up().build());
+        }, REFRESH_INTERVAL, 0, Duration.ofSeconds(1));
+
+        assertThat(indicator.health().block().getStatus()).isEqualTo(Status.UNKNOWN);
+        indicator.start();
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(indicator.health().block().getStatus()).isEqualTo(Status.UP);
+        }
+        assertThat(checks).hasValue(1);
+
+        scheduler.advanceTimeBy(REFRESH_INTERVAL);
+        assertThat(checks).hasValue(2);
+        indicator.stop();
+    }
+
+    @Test
+    void reportsAgeOfSnapshot() throws InterruptedException {
+        CachedHealthIndicator indicator = new CachedHealthIndicator("test",
+            () -> Mono.just(Health.up().build()), REFRESH_INTERVAL, 0, Duration.ofSeconds(1));
+        indicator.start();
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+
+        // The age is measured with the wall clock
+        Thread.sleep(50);
+        Health health = indicator.health().block();
+        assertThat(health.getDetails()).containsKey("checkedAt");
+        assertThat((Long) health.getDetails().get("ageMs")).isGreaterThanOrEqualTo(50);
+        indicator.stop();
+    }
+
+    @Test
+    void checksAreSpacedByIntervalWithJitter() {
+        List<Long> checkedAt = new ArrayList<>();
+        CachedHealthIndicator indicator = new CachedHealthIndicator("test", () -> {
+            checkedAt.add(scheduler.now(TimeUnit.MILLISECONDS));
+            return Mono.just(Health.up().build());
+        }, REFRESH_INTERVAL, 0.2, Duration.ofSeconds(1));
+        indicator.start();
+
+        scheduler.advanceTimeBy(Duration.ofMinutes(10));
+        indicator.stop();
+
+        // Only the first check is delayed by the initial part of the jitter
+        assertThat(checkedAt).hasSizeGreaterThan(40);
+        assertThat(checkedAt.get(0)).isBetween(0L, 2_000L);
+        for (int i = 1; i < checkedAt.size(); i++) {
+            assertThat(checkedAt.get(i) - checkedAt.get(i - 1)).isBetween(8_000L, 12_000L);
+        }
+    }
+
+    @Test
+    void checkThatTimesOutIsDown() {
+        CachedHealthIndicator indicator = new CachedHealthIndicator("test", Mono::never,
+            REFRESH_INTERVAL, 0, Duration.ofSeconds(1));
+        indicator.start();
+
+        scheduler.advanceTimeBy(Duration.ofMillis(500));
+        assertThat(indicator.health().block().getStatus()).isEqualTo(Status.UNKNOWN);
+
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+        assertThat(indicator.health().block().getStatus()).isEqualTo(Status.DOWN);
+        indicator.stop();
+    }
+}